@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.diff.JsonDiff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for both {@link JsonDiff} entry points
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonDiffBenchmark
+{
+    @Param({ "10", "100", "1000", "10000", "100000" })
+    public int entitlements;
+
+    @Param({ "0.05" })
+    public double changeRatio;
+
+    private JsonNode source;
+    private JsonNode target;
+    private Map<JsonPointerCustom, Set<String>> keys;
+
+    @Setup
+    public void setup()
+    {
+        source = RoleDocuments.role(entitlements, 1L);
+        target = RoleDocuments.mutate(RoleDocuments.role(entitlements, 1L),
+            changeRatio, 2L);
+        keys = RoleDocuments.entitlementKeys();
+    }
+
+    @Benchmark
+    public JsonPatch asJsonPatch()
+    {
+        return JsonDiff.asJsonPatch(source, target);
+    }
+
+    @Benchmark
+    public JsonPatch asJsonPatchWithKeys()
+    {
+        return JsonDiff.asJsonPatch(source, target, keys);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link JsonPatch} deserialization and application
+ *
+ * <p>{@link JsonPatch#apply(JsonNode)} is measured with a patch of {@code
+ * test}, {@code replace} and {@code remove} operations over the entitlements;
+ * {@link JsonPatch#apply(JsonNode, boolean)} with a patch granting new
+ * entitlements.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonPatchBenchmark
+{
+    @Param({ "10", "100", "1000", "10000", "100000" })
+    public int entitlements;
+
+    @Param({ "0.01" })
+    public double changeRatio;
+
+    private JsonNode role;
+    private JsonNode syncPatchNode;
+    private JsonPatch syncPatch;
+    private JsonPatch grantPatch;
+
+    @Setup
+    public void setup()
+        throws IOException
+    {
+        role = RoleDocuments.role(entitlements, 1L);
+        syncPatchNode = RoleDocuments.syncPatch(RoleDocuments.role(
+            entitlements, 1L), changeRatio);
+        syncPatch = JsonPatch.fromJson(syncPatchNode);
+        grantPatch = JsonPatch.fromJson(RoleDocuments.grantPatch(
+            Math.max(1, (int) (entitlements * changeRatio)), 3L));
+    }
+
+    @Benchmark
+    public JsonPatch fromJson()
+        throws IOException
+    {
+        return JsonPatch.fromJson(syncPatchNode);
+    }
+
+    @Benchmark
+    public JsonNode apply()
+        throws JsonPatchException
+    {
+        return syncPatch.apply(role);
+    }
+
+    @Benchmark
+    public JsonNode applyWithFlag()
+        throws JsonPatchException
+    {
+        return grantPatch.apply(role, true);
+    }
+}
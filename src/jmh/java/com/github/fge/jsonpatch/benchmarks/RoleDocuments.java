@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Synthetic role documents for benchmarks
+ *
+ * <p>Documents have the same shape as the role exports the custom diff is
+ * written for: a handful of scalar role attributes plus an {@code
+ * Entitlements} array whose elements are identified by their application
+ * key, entitlement type and entitlement name.</p>
+ *
+ * <p>All generation is driven by a seeded {@link Random}, so that two runs
+ * with the same parameters produce the same documents.</p>
+ */
+public final class RoleDocuments
+{
+    public static final String ENTITLEMENTS = "Entitlements";
+
+    private static final String APPLICATION_KEY = "Application Key";
+    private static final String ENTITLEMENT_TYPE = "Entitlement Type";
+    private static final String ENTITLEMENT_NAME = "Entitlement Name";
+    private static final String ENTITLEMENT_KEY = "Entitlement Key";
+    private static final String ADDITIONAL_INFO = "Additional Info";
+
+    private static final String[] TYPES = {
+        "UD_GROUPS_GROUPS", "UD_ROLES_ROLES", "AD_GROUPS", "LDAP_GROUPS"
+    };
+
+    private static final JsonNodeFactory FACTORY = JacksonUtils.nodeFactory();
+
+    private RoleDocuments()
+    {
+    }
+
+    /**
+     * The identity keys of the {@code Entitlements} array, in the form
+     * expected by {@code JsonDiff.asJsonPatch(source, target, map)}
+     *
+     * @return an unmodifiable map
+     */
+    public static Map<JsonPointerCustom, Set<String>> entitlementKeys()
+    {
+        final Set<String> keys = new HashSet<String>(Arrays.asList(
+            APPLICATION_KEY, ENTITLEMENT_TYPE, ENTITLEMENT_NAME));
+        final Map<JsonPointerCustom, Set<String>> map
+            = new HashMap<JsonPointerCustom, Set<String>>();
+        map.put(JsonPointerCustom.of(ENTITLEMENTS),
+            Collections.unmodifiableSet(keys));
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Generate a role document
+     *
+     * @param entitlements number of entitlements
+     * @param seed the random seed
+     * @return a new role document
+     */
+    public static ObjectNode role(final int entitlements, final long seed)
+    {
+        final Random random = new Random(seed);
+        final ObjectNode role = FACTORY.objectNode();
+        final String id = Integer.toString(10000 + random.nextInt(90000));
+
+        role.put("Role Display Name", "Role " + id);
+        role.put("Role Category", "Default");
+        role.put("Role Name", "Role " + id);
+        role.put("Role Description", "Synthetic role " + id);
+        role.put("Organization", "Confluxsys");
+        role.put("Role Owner Login", "OWNER" + random.nextInt(100));
+        role.put("Role ID", id);
+        role.put("$identifier", id);
+
+        final ArrayNode array = role.putArray(ENTITLEMENTS);
+        for (int i = 0; i < entitlements; i++)
+            array.add(entitlement(random, i));
+
+        return role;
+    }
+
+    /**
+     * Produce a modified copy of a role document
+     *
+     * <p>The owner is changed, and a fraction of the entitlements are each
+     * removed, modified and replaced by new ones. With a ratio of 0.05, for
+     * instance, about 15% of the entitlements are affected.</p>
+     *
+     * @param role the original role
+     * @param ratio the fraction of entitlements affected by each change
+     * @param seed the random seed
+     * @return a modified copy
+     */
+    public static ObjectNode mutate(final ObjectNode role, final double ratio,
+        final long seed)
+    {
+        final Random random = new Random(seed);
+        final ObjectNode ret = role.deepCopy();
+        final ArrayNode source = (ArrayNode) role.get(ENTITLEMENTS);
+        final ArrayNode target = ret.putArray(ENTITLEMENTS);
+        final int size = source.size();
+
+        ret.put("Role Owner Login", "OWNER" + random.nextInt(100));
+
+        ObjectNode element;
+        double draw;
+
+        for (int i = 0; i < size; i++) {
+            element = (ObjectNode) source.get(i).deepCopy();
+            draw = random.nextDouble();
+            if (draw < ratio)
+                continue;
+            if (draw < 2 * ratio)
+                element.put(ADDITIONAL_INFO, "updated " + random.nextInt());
+            target.add(element);
+        }
+
+        final int added = (int) Math.ceil(size * ratio);
+        for (int i = 0; i < added; i++)
+            target.add(entitlement(random, size + i));
+
+        return ret;
+    }
+
+    /**
+     * Generate a JSON Patch touching a fraction of the entitlements, made of
+     * {@code test}, {@code replace} and {@code remove} operations
+     *
+     * <p>Removals are emitted last and from the end of the array, so that all
+     * indices remain valid while the patch is applied.</p>
+     *
+     * @param role the role the patch is meant for
+     * @param ratio the fraction of entitlements affected
+     * @return the patch, as JSON
+     */
+    public static ArrayNode syncPatch(final ObjectNode role,
+        final double ratio)
+    {
+        final ArrayNode patch = FACTORY.arrayNode();
+        final ArrayNode array = (ArrayNode) role.get(ENTITLEMENTS);
+        final int size = array.size();
+        final int step = Math.max(1, (int) (1 / ratio));
+
+        ObjectNode op;
+        String path;
+
+        op = patch.addObject();
+        op.put("op", "test");
+        op.put("path", "/Role ID");
+        op.set("value", role.get("Role ID"));
+
+        for (int i = 0; i < size; i += step) {
+            path = "/" + ENTITLEMENTS + '/' + i + '/' + ENTITLEMENT_NAME;
+            op = patch.addObject();
+            op.put("op", "replace");
+            op.put("path", path);
+            op.put("value", "renamed " + i);
+            op.set("originalValue", array.get(i).get(ENTITLEMENT_NAME));
+        }
+
+        for (int i = size - 1; i >= 0; i -= step) {
+            op = patch.addObject();
+            op.put("op", "remove");
+            op.put("path", "/" + ENTITLEMENTS + '/' + i);
+        }
+
+        return patch;
+    }
+
+    /**
+     * Generate a JSON Patch granting new entitlements to a role
+     *
+     * @param count the number of entitlements to add
+     * @param seed the random seed
+     * @return the patch, as JSON
+     */
+    public static ArrayNode grantPatch(final int count, final long seed)
+    {
+        final Random random = new Random(seed);
+        final ArrayNode patch = FACTORY.arrayNode();
+
+        ObjectNode op;
+
+        for (int i = 0; i < count; i++) {
+            op = patch.addObject();
+            op.put("op", "add");
+            op.put("path", "/" + ENTITLEMENTS + "/-");
+            op.set("value", entitlement(random, 1000000 + i));
+        }
+
+        return patch;
+    }
+
+    /**
+     * Generate a JSON Merge Patch changing a few role attributes
+     *
+     * @param seed the random seed
+     * @return the merge patch, as JSON
+     */
+    public static ObjectNode mergePatch(final long seed)
+    {
+        final Random random = new Random(seed);
+        final ObjectNode patch = FACTORY.objectNode();
+
+        patch.put("Role Owner Login", "OWNER" + random.nextInt(100));
+        patch.put("Role Description", "Updated " + random.nextInt());
+        patch.putNull("$identifier");
+
+        return patch;
+    }
+
+    private static JsonNode entitlement(final Random random, final int index)
+    {
+        final ObjectNode node = FACTORY.objectNode();
+
+        node.put(APPLICATION_KEY, Integer.toString(100 + index % 1000));
+        node.put(ENTITLEMENT_TYPE, TYPES[index % TYPES.length]);
+        node.put(ENTITLEMENT_NAME, index + "~Entitlement " + index);
+        if (random.nextBoolean())
+            node.put(ENTITLEMENT_KEY, Long.toHexString(random.nextLong()));
+        if (random.nextInt(4) == 0)
+            node.put(ADDITIONAL_INFO, "info " + random.nextInt(1000));
+
+        return node;
+    }
+}
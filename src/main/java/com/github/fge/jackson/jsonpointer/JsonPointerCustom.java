@@ -94,6 +94,48 @@ public final class JsonPointerCustom
         return new JsonPointerCustom(fromTokensGetAfter(tokensFromInput(input)));
     }
 
+    /**
+     * Tell whether this pointer locates an array element by value
+     *
+     * @return true if one of the reference tokens is {@code ?}
+     */
+    public boolean hasUnknown() {
+        return unknownIndex() != -1;
+    }
+
+    /**
+     * Return the part of this pointer before the first {@code ?} token
+     *
+     * <p>Unlike {@link #getBeforeUnknown(String)}, this does not parse the
+     * pointer again.</p>
+     *
+     * @return a new pointer; this pointer if it has no {@code ?} token
+     */
+    public JsonPointerCustom beforeUnknown() {
+        final int index = unknownIndex();
+        return index == -1 ? this
+                : new JsonPointerCustom(tokenResolvers.subList(0, index));
+    }
+
+    /**
+     * Return the part of this pointer after the first {@code ?} token
+     *
+     * @return a new pointer; the empty pointer if it has no {@code ?} token
+     */
+    public JsonPointerCustom afterUnknown() {
+        final int index = unknownIndex();
+        return index == -1 ? EMPTY : new JsonPointerCustom(
+                tokenResolvers.subList(index + 1, tokenResolvers.size()));
+    }
+
+    private int unknownIndex() {
+        final int size = tokenResolvers.size();
+        for (int i = 0; i < size; i++)
+            if (tokenResolvers.get(i).getToken().getRaw().equals("?"))
+                return i;
+        return -1;
+    }
+
     private static List<TokenResolver<JsonNode>> fromTokensGetAfter(
             final List<ReferenceToken> tokens) {
 
@@ -148,7 +190,34 @@ public final class JsonPointerCustom
      */
     public JsonPointerCustom(final String input)
             throws JsonPointerException {
-        this(fromTokens(tokensFromInput(input)));
+        this(parse(input));
+    }
+
+    /*
+     * Scan the input in place, instead of splitting it into cooked tokens and
+     * decoding them
+     */
+    private static List<TokenResolver<JsonNode>> parse(final String input)
+            throws JsonPointerException {
+        if (!PointerParser.isWellFormed(input))
+            throw PointerParser.error(input);
+
+        final int length = input.length();
+        final List<TokenResolver<JsonNode>> list = new ArrayList<>();
+        int start = 1;
+        int end;
+        String raw;
+
+        while (start <= length) {
+            end = PointerParser.end(input, start);
+            raw = PointerParser.raw(input, start, end);
+            if (raw == null)
+                throw PointerParser.error(input);
+            list.add(new JsonNodeResolver(ReferenceToken.fromRaw(raw)));
+            start = end + 1;
+        }
+
+        return list;
     }
 
     /**
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jackson.jsonpointer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A JSON Pointer as a chain of reference tokens, each linked to its parent
+ *
+ * <p>Unlike with {@link JsonPointerCustom}, appending a token allocates a
+ * single node whatever the depth of the pointer, the prefix being shared with
+ * the parent. The hash code is computed when the node is created; the string
+ * form, and the equivalent {@link JsonPointerCustom}, are computed once, when
+ * first needed, and reuse the work done for the parent.</p>
+ *
+ * <p>Pointers descending from an {@link #internedRoot() interning root} are
+ * interned: appending a given token to a given pointer always returns the same
+ * node, so that pointers sharing a prefix such as {@code /Entitlements} share
+ * its nodes, and their conversions.</p>
+ *
+ * <p>Pointers are immutable, and can be shared between threads.</p>
+ */
+@ThreadSafe
+public final class LinkedPointer {
+    private static final LinkedPointer EMPTY = new LinkedPointer(null, "",
+            false);
+
+    @Nullable
+    private final LinkedPointer parent;
+    private final String raw;
+    private final int depth;
+    private final int hashCode;
+    @Nullable
+    private final ConcurrentMap<String, LinkedPointer> children;
+
+    /*
+     * Computed on demand; these are immutable, so that racing threads at worst
+     * compute them twice
+     */
+    private String encoded;
+    private JsonNodeResolver resolver;
+    private JsonPointerCustom pointer;
+
+    private LinkedPointer(@Nullable final LinkedPointer parent,
+                          final String raw, final boolean interning) {
+        this.parent = parent;
+        this.raw = raw;
+        if (parent == null) {
+            depth = 0;
+            hashCode = 1;
+            encoded = "";
+            pointer = JsonPointerCustom.empty();
+        } else {
+            depth = parent.depth + 1;
+            hashCode = 31 * parent.hashCode + raw.hashCode();
+        }
+        children = interning
+                ? new ConcurrentHashMap<String, LinkedPointer>() : null;
+    }
+
+    /**
+     * Return the empty pointer
+     *
+     * @return a statically allocated, non interning empty pointer
+     */
+    public static LinkedPointer empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Return a new empty pointer interning its descendants
+     *
+     * <p>The nodes of the trie are kept as long as the root is reachable.</p>
+     *
+     * @return a new empty pointer
+     */
+    public static LinkedPointer internedRoot() {
+        return new LinkedPointer(null, "", true);
+    }
+
+    /**
+     * Parse a JSON Pointer string
+     *
+     * @param input the input string
+     * @return a new pointer
+     * @throws JsonPointerException malformed JSON Pointer
+     * @throws NullPointerException null input
+     */
+    public static LinkedPointer parse(final String input)
+            throws JsonPointerException {
+        return EMPTY.resolve(input);
+    }
+
+    /**
+     * Append the tokens of a JSON Pointer string to this pointer
+     *
+     * <p>The string is scanned in place, and tokens without escape sequences
+     * are only extracted if they are not already interned.</p>
+     *
+     * @param input the input string
+     * @return a new pointer; this pointer if the input is empty
+     * @throws JsonPointerException malformed JSON Pointer
+     * @throws NullPointerException null input
+     */
+    public LinkedPointer resolve(final String input)
+            throws JsonPointerException {
+        if (!PointerParser.isWellFormed(input))
+            throw PointerParser.error(input);
+
+        final int length = input.length();
+        LinkedPointer ret = this;
+        int start = 1;
+        int end;
+        String token;
+
+        while (start <= length) {
+            end = PointerParser.end(input, start);
+            token = PointerParser.raw(input, start, end);
+            if (token == null)
+                throw PointerParser.error(input);
+            ret = ret.append(token);
+            start = end + 1;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Return a new pointer with a new token appended
+     *
+     * @param raw the raw token to append
+     * @return a new pointer
+     * @throws NullPointerException input is null
+     */
+    public LinkedPointer append(final String raw) {
+        if (raw == null)
+            throw new NullPointerException();
+        if (children == null)
+            return new LinkedPointer(this, raw, false);
+
+        final LinkedPointer child = children.get(raw);
+        if (child != null)
+            return child;
+        final LinkedPointer created = new LinkedPointer(this, raw, true);
+        final LinkedPointer previous = children.putIfAbsent(raw, created);
+        return previous == null ? created : previous;
+    }
+
+    /**
+     * Return a new pointer with a new integer token appended
+     *
+     * @param index the integer token to append
+     * @return a new pointer
+     */
+    public LinkedPointer append(final int index) {
+        return append(Integer.toString(index));
+    }
+
+    /**
+     * Return the immediate parent of this pointer
+     *
+     * @return the parent; the parent of the empty pointer is itself
+     */
+    public LinkedPointer parent() {
+        return parent == null ? this : parent;
+    }
+
+    /**
+     * Return the last reference token of this pointer
+     *
+     * @return the raw token; the empty string for the empty pointer
+     */
+    public String getRaw() {
+        return raw;
+    }
+
+    /**
+     * Return the number of reference tokens of this pointer
+     *
+     * @return the depth; 0 for the empty pointer
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Tell whether this pointer is empty
+     *
+     * @return true if this pointer has no reference tokens
+     */
+    public boolean isEmpty() {
+        return parent == null;
+    }
+
+    /**
+     * Return the value this pointer refers to in a document
+     *
+     * @param node the document
+     * @return the value, or a missing node if there is none
+     */
+    public JsonNode path(final JsonNode node) {
+        return toJsonPointer().path(node);
+    }
+
+    /**
+     * Return the equivalent {@link JsonPointerCustom}
+     *
+     * <p>The conversion is done once; the token resolvers are shared with the
+     * conversions of the ancestors of this pointer.</p>
+     *
+     * @return the pointer
+     */
+    public JsonPointerCustom toJsonPointer() {
+        JsonPointerCustom ret = pointer;
+        if (ret != null)
+            return ret;
+
+        final List<TokenResolver<JsonNode>> list
+                = new ArrayList<TokenResolver<JsonNode>>(depth);
+        for (LinkedPointer node = this; node.depth > 0; node = node.parent)
+            list.add(node.resolver());
+        Collections.reverse(list);
+        ret = new JsonPointerCustom(list);
+        pointer = ret;
+        return ret;
+    }
+
+    private JsonNodeResolver resolver() {
+        JsonNodeResolver ret = resolver;
+        if (ret == null) {
+            ret = new JsonNodeResolver(ReferenceToken.fromRaw(raw));
+            resolver = ret;
+        }
+        return ret;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        if (obj == null)
+            return false;
+        if (this == obj)
+            return true;
+        if (getClass() != obj.getClass())
+            return false;
+        LinkedPointer a = this;
+        LinkedPointer b = (LinkedPointer) obj;
+        if (a.depth != b.depth)
+            return false;
+        while (a != b) {
+            if (a.hashCode != b.hashCode || !a.raw.equals(b.raw))
+                return false;
+            a = a.parent;
+            b = b.parent;
+        }
+        return true;
+    }
+
+    /**
+     * Return the string form of this pointer
+     *
+     * @return the encoded JSON Pointer
+     */
+    @Override
+    public String toString() {
+        String ret = encoded;
+        if (ret != null)
+            return ret;
+
+        final StringBuilder sb = new StringBuilder();
+        final String prefix = parent.encoded;
+        if (prefix != null) {
+            sb.append(prefix);
+        } else {
+            final LinkedPointer[] nodes = new LinkedPointer[depth - 1];
+            LinkedPointer node = parent;
+            for (int i = depth - 2; i >= 0; i--) {
+                nodes[i] = node;
+                node = node.parent;
+            }
+            for (final LinkedPointer ancestor : nodes)
+                PointerParser.appendEncoded(sb.append('/'), ancestor.raw);
+        }
+        PointerParser.appendEncoded(sb.append('/'), raw);
+
+        ret = sb.toString();
+        encoded = ret;
+        return ret;
+    }
+}
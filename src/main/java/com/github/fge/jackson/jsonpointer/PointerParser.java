@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jackson.jsonpointer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Scanner over the reference tokens of a JSON Pointer string
+ *
+ * <p>Tokens are located by index in the input, without splitting it first; a
+ * token only allocates a string if it has escape sequences to decode, or when
+ * its raw value is actually required.</p>
+ */
+final class PointerParser {
+    private PointerParser() {
+    }
+
+    /**
+     * Tell whether a string can be scanned
+     *
+     * @param input the string
+     * @return true if it is empty or starts with a slash
+     */
+    static boolean isWellFormed(final String input) {
+        return input.isEmpty() || input.charAt(0) == '/';
+    }
+
+    /**
+     * Return the end of the token starting at a given index
+     *
+     * @param input the string
+     * @param start the index of the first character of the token, just after
+     * its slash
+     * @return the index of the next slash, or the length of the input
+     */
+    static int end(final String input, final int start) {
+        final int ret = input.indexOf('/', start);
+        return ret == -1 ? input.length() : ret;
+    }
+
+    /**
+     * Decode a token
+     *
+     * @param input the string
+     * @param start the index of the first character of the token
+     * @param end the index just after its last character
+     * @return the raw token, or {@code null} if it has an illegal escape
+     * sequence
+     */
+    @Nullable
+    static String raw(final String input, final int start, final int end) {
+        int tilde = input.indexOf('~', start);
+        if (tilde == -1 || tilde >= end)
+            return input.substring(start, end);
+
+        final StringBuilder sb = new StringBuilder(end - start);
+        int from = start;
+        char c;
+        while (tilde != -1 && tilde < end) {
+            if (tilde + 1 == end)
+                return null;
+            c = input.charAt(tilde + 1);
+            if (c != '0' && c != '1')
+                return null;
+            sb.append(input, from, tilde).append(c == '0' ? '~' : '/');
+            from = tilde + 2;
+            tilde = input.indexOf('~', from);
+        }
+        return sb.append(input, from, end).toString();
+    }
+
+    /**
+     * Return the error the original parser reports for a malformed input
+     *
+     * @param input the string
+     * @return the exception to throw
+     */
+    static JsonPointerException error(final String input) {
+        try {
+            TreePointer.tokensFromInput(input);
+        } catch (JsonPointerException e) {
+            return e;
+        }
+        throw new IllegalArgumentException("well-formed input: " + input);
+    }
+
+    /**
+     * Encode a raw token
+     *
+     * @param sb the builder to append the encoded token to
+     * @param raw the raw token
+     */
+    static void appendEncoded(final StringBuilder sb, final String raw) {
+        final int length = raw.length();
+        char c;
+        for (int i = 0; i < length; i++) {
+            c = raw.charAt(i);
+            if (c == '~')
+                sb.append("~0");
+            else if (c == '/')
+                sb.append("~1");
+            else
+                sb.append(c);
+        }
+    }
+}
@@ -81,7 +81,45 @@ public final class AddOperation extends JsonPatchOperation {
 
     @Override
     public JsonNode apply(final JsonNode node) throws JsonPatchException {
-        return null;
+        return applyInPlace(node.deepCopy());
+    }
+
+    @Override
+    JsonNode applyInPlace(final JsonNode node) throws JsonPatchException {
+        return add(node, path, originalValue.deepCopy());
+    }
+
+    /*
+     * Add a value to a JSON value, modifying it; used by copy and move as well.
+     * All checks are done first, so that the value is left untouched on
+     * failure.
+     */
+    static JsonNode add(final JsonNode node, final JsonPointerCustom path, final JsonNode value) throws JsonPatchException {
+        if (path.isEmpty()) return value;
+        final JsonNode parentNode = path.parent().path(node);
+        if (parentNode.isMissingNode())
+            throw new JsonPatchException(BUNDLE.getMessage("jsonPatch.noSuchParent"));
+        if (!parentNode.isContainerNode())
+            throw new JsonPatchException(BUNDLE.getMessage("jsonPatch.parentNotContainer"));
+        final TokenResolver<JsonNode> token = Iterables.getLast(path);
+        if (parentNode.isObject()) {
+            ((ObjectNode) parentNode).set(token.getToken().getRaw(), value);
+            return node;
+        }
+        final ArrayNode array = (ArrayNode) parentNode;
+        if (token.getToken().equals(LAST_ARRAY_ELEMENT)) {
+            array.add(value);
+            return node;
+        }
+        final int index;
+        try {
+            index = Integer.parseInt(token.getToken().getRaw());
+        } catch (NumberFormatException ignored) {
+            throw new JsonPatchException(BUNDLE.getMessage("jsonPatch.notAnIndex"));
+        }
+        if (index < 0 || index > array.size()) throw new JsonPatchException(BUNDLE.getMessage("jsonPatch.noSuchIndex"));
+        array.insert(index, value);
+        return node;
     }
 
     @Override
@@ -104,6 +142,22 @@ public final class AddOperation extends JsonPatchOperation {
         return parentNode.isArray() ? addToArray(path, node) : addToObject(path, node);
     }
 
+    /*
+     * Elements appended by value-locator patches are recorded in the index
+     */
+    @Override
+    JsonNode apply(final JsonNode node, final boolean flag, final ValueLocatorIndex index) throws JsonPatchException {
+        if (path.isEmpty() || !Iterables.getLast(path).getToken().equals(LAST_ARRAY_ELEMENT)
+                || !path.parent().path(node).isArray()) {
+            index.clear();
+            return apply(node, flag);
+        }
+        final ArrayNode parentNode = (ArrayNode) path.parent().path(node);
+        parentNode.add(originalValue.deepCopy());
+        index.appended(parentNode);
+        return node;
+    }
+
     private JsonNode addToArray(final JsonPointerCustom path, final JsonNode node) throws JsonPatchException {
         final JsonNode ret = node.deepCopy();
         final ArrayNode target = (ArrayNode) path.parent().get(ret);
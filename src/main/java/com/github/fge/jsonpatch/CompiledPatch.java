@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jackson.jsonpointer.TokenResolver;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link JsonPatch} prepared for repeated application
+ *
+ * <p>Obtained with {@link JsonPatch#compile()}. All pointers of the patch are
+ * split into reference tokens, and array indices parsed, once and for all;
+ * when consecutive operations have the same parent container, the parent is
+ * only looked up once. Applying the plan then allocates little more than the
+ * values it inserts.</p>
+ *
+ * <p>Operations are applied as documented by their respective classes, and
+ * fail with the same messages. Operations whose path uses {@code ?} to locate
+ * an array element by value are applied as by {@link JsonPatch#apply(JsonNode,
+ * boolean)} in strict mode, through an index of the arrays they locate
+ * elements in; that index is built anew for each application. Operations of
+ * other types are applied as they are.</p>
+ *
+ * <p>Instances of this class are immutable, and can be used by several threads
+ * at once.</p>
+ *
+ * @since 1.14
+ */
+@Immutable
+public final class CompiledPatch {
+    private static final MessageBundle BUNDLE
+            = MessageBundles.getBundle(JsonPatchMessages.class);
+
+    private static final JsonNumEquals EQUIVALENCE
+            = JsonNumEquals.getInstance();
+
+    private final Step[] steps;
+
+    CompiledPatch(final List<JsonPatchOperation> operations) {
+        steps = new Step[operations.size()];
+
+        Step previous = null;
+
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = new Step(operations.get(i), previous);
+            previous = steps[i];
+        }
+    }
+
+    /**
+     * Apply this patch to a JSON value
+     *
+     * <p>The value is not modified: it is copied once, and the patch then
+     * applied to the copy.</p>
+     *
+     * @param node the value to apply the patch to
+     * @return the patched JSON value
+     * @throws JsonPatchException   failed to apply patch
+     * @throws NullPointerException input is null
+     */
+    public JsonNode apply(final JsonNode node)
+            throws JsonPatchException {
+        BUNDLE.checkNotNull(node, "jsonPatch.nullInput");
+        return applyInPlace(node.deepCopy());
+    }
+
+    /**
+     * Apply this patch to a JSON value, modifying it
+     *
+     * <p>If an operation fails, the value is left as the previous operations
+     * have modified it. The returned value is not the given value if the
+     * patch replaces or removes the whole document.</p>
+     *
+     * @param node the value to apply the patch to
+     * @return the patched JSON value
+     * @throws JsonPatchException   failed to apply patch
+     * @throws NullPointerException input is null
+     */
+    public JsonNode applyInPlace(final JsonNode node)
+            throws JsonPatchException {
+        BUNDLE.checkNotNull(node, "jsonPatch.nullInput");
+
+        JsonNode root = node;
+        JsonNode parent = null;
+        ValueLocatorIndex index = null;
+
+        for (final Step step : steps) {
+            if (step.kind == Kind.LOCATED) {
+                if (index == null)
+                    index = new ValueLocatorIndex();
+                root = step.operation.apply(root, true, index);
+                parent = null;
+                continue;
+            }
+            if (index != null)
+                index.clear();
+            if (step.kind == Kind.OTHER) {
+                root = step.operation.applyInPlace(root);
+                parent = null;
+                continue;
+            }
+            if (step.last == null) {
+                root = step.applyToRoot(root);
+                parent = null;
+                continue;
+            }
+            if (!step.sameParent)
+                parent = resolve(root, step.parent);
+            root = step.apply(root, parent);
+        }
+
+        return root;
+    }
+
+    private enum Kind {
+        ADD,
+        COPY,
+        MOVE,
+        REMOVE,
+        REPLACE,
+        TEST,
+        LOCATED,
+        OTHER
+    }
+
+    /*
+     * A reference token, with its value as an array index: -1 if it cannot be
+     * one
+     */
+    private static final class Token {
+        private final String raw;
+        private final int index;
+        private final boolean isIndex;
+
+        private Token(final String raw) {
+            this.raw = raw;
+            int value;
+            boolean parsed;
+            try {
+                value = Integer.parseInt(raw);
+                parsed = true;
+            } catch (NumberFormatException ignored) {
+                value = -1;
+                parsed = false;
+            }
+            index = value < 0 ? -1 : value;
+            isIndex = parsed;
+        }
+    }
+
+    private static final class Step {
+        private final Kind kind;
+        private final JsonPatchOperation operation;
+        private final List<String> path;
+        private final Token[] parent;
+        @Nullable
+        private final Token last;
+        private final Token[] from;
+        private final List<String> fromPath;
+        private final JsonNode value;
+        private final boolean sameParent;
+
+        private Step(final JsonPatchOperation operation,
+                     @Nullable final Step previous) {
+            this.operation = operation;
+            kind = kindOf(operation);
+            path = raw(operation.getPath());
+
+            final Token[] tokens = tokens(path);
+
+            parent = tokens.length == 0 ? tokens
+                    : Arrays.copyOf(tokens, tokens.length - 1);
+            last = tokens.length == 0 ? null : tokens[tokens.length - 1];
+
+            if (operation instanceof DualPathOperation) {
+                fromPath = raw(((DualPathOperation) operation).from);
+                from = tokens(fromPath);
+            } else {
+                fromPath = null;
+                from = null;
+            }
+
+            if (operation instanceof AddOperation)
+                value = operation.originalValue;
+            else if (operation instanceof PathValueOperation)
+                value = ((PathValueOperation) operation).value;
+            else
+                value = null;
+
+            /*
+             * Operations other than move and copy only modify the children of
+             * their parent, which therefore stays where it was.
+             */
+            sameParent = previous != null && kind != Kind.OTHER
+                    && kind != Kind.LOCATED
+                    && previous.last != null && last != null
+                    && previous.kind != Kind.MOVE && previous.kind != Kind.COPY
+                    && previous.kind != Kind.OTHER
+                    && previous.kind != Kind.LOCATED
+                    && previous.path.subList(0, previous.path.size() - 1)
+                    .equals(path.subList(0, path.size() - 1));
+        }
+
+        private JsonNode applyToRoot(final JsonNode root)
+                throws JsonPatchException {
+            switch (kind) {
+                case ADD:
+                    return value.deepCopy();
+                case REPLACE:
+                    existing(root, parent);
+                    return value.deepCopy();
+                case REMOVE:
+                    return MissingNode.getInstance();
+                case TEST:
+                    test(existing(root, parent));
+                    return root;
+                case COPY:
+                    return existing(root, from).deepCopy();
+                default: // MOVE
+                    if (fromPath.equals(path))
+                        return root;
+                    return existing(root, from);
+            }
+        }
+
+        private JsonNode apply(final JsonNode root,
+                               @Nullable final JsonNode parentNode)
+                throws JsonPatchException {
+            switch (kind) {
+                case ADD:
+                    add(parentNode, value.deepCopy());
+                    return root;
+                case REMOVE:
+                    target(parentNode);
+                    remove(parentNode, last);
+                    return root;
+                case REPLACE:
+                    target(parentNode);
+                    if (parentNode.isObject())
+                        ((ObjectNode) parentNode).set(last.raw,
+                                value.deepCopy());
+                    else
+                        ((ArrayNode) parentNode).set(last.index,
+                                value.deepCopy());
+                    return root;
+                case TEST:
+                    test(target(parentNode));
+                    return root;
+                case COPY:
+                    add(parentNode, existing(root, from).deepCopy());
+                    return root;
+                default: // MOVE
+                    return move(root);
+            }
+        }
+
+        private JsonNode move(final JsonNode root)
+                throws JsonPatchException {
+            if (fromPath.equals(path))
+                return root;
+
+            final JsonNode moved = existing(root, from);
+
+            /*
+             * Moving the whole document into itself: there is no parent left
+             * to add it to
+             */
+            if (from.length == 0)
+                throw new JsonPatchException(BUNDLE.getMessage(
+                        "jsonPatch.noSuchParent"));
+
+            /*
+             * As with MoveOperation, the destination can only be checked once
+             * the value is removed; if the value cannot be added, it is put
+             * back where it was.
+             */
+            final JsonNode fromParent
+                    = resolve(root, Arrays.copyOf(from, from.length - 1));
+            final Token token = from[from.length - 1];
+
+            if (fromParent.isArray()) {
+                ((ArrayNode) fromParent).remove(token.index);
+                try {
+                    add(resolve(root, parent), moved);
+                } catch (JsonPatchException e) {
+                    ((ArrayNode) fromParent).insert(token.index, moved);
+                    throw e;
+                }
+                return root;
+            }
+
+            final ObjectNode object = (ObjectNode) fromParent;
+            final String next = MoveOperation.nextMember(object, token.raw);
+            object.remove(token.raw);
+            try {
+                add(resolve(root, parent), moved);
+            } catch (JsonPatchException e) {
+                MoveOperation.restore(object, token.raw, moved, next);
+                throw e;
+            }
+            return root;
+        }
+
+        private void add(@Nullable final JsonNode parentNode,
+                         final JsonNode added)
+                throws JsonPatchException {
+            if (parentNode == null)
+                throw new JsonPatchException(BUNDLE.getMessage(
+                        "jsonPatch.noSuchParent"));
+            if (!parentNode.isContainerNode())
+                throw new JsonPatchException(BUNDLE.getMessage(
+                        "jsonPatch.parentNotContainer"));
+
+            if (parentNode.isObject()) {
+                ((ObjectNode) parentNode).set(last.raw, added);
+                return;
+            }
+
+            final ArrayNode array = (ArrayNode) parentNode;
+
+            if (last.raw.equals("-")) {
+                array.add(added);
+                return;
+            }
+            if (!last.isIndex)
+                throw new JsonPatchException(BUNDLE.getMessage(
+                        "jsonPatch.notAnIndex"));
+            if (last.index < 0 || last.index > array.size())
+                throw new JsonPatchException(BUNDLE.getMessage(
+                        "jsonPatch.noSuchIndex"));
+            array.insert(last.index, added);
+        }
+
+        private void test(final JsonNode tested)
+                throws JsonPatchException {
+            if (!EQUIVALENCE.equivalent(tested, value))
+                throw new JsonPatchException(BUNDLE.getMessage(
+                        "jsonPatch.valueTestFailure"));
+        }
+
+        private JsonNode target(@Nullable final JsonNode parentNode)
+                throws JsonPatchException {
+            final JsonNode ret = parentNode == null ? null
+                    : child(parentNode, last);
+            if (ret == null)
+                throw new JsonPatchException(BUNDLE.getMessage(
+                        "jsonPatch.noSuchPath"));
+            return ret;
+        }
+    }
+
+    private static Kind kindOf(final JsonPatchOperation operation) {
+        if (operation.getPath().hasUnknown())
+            return Kind.LOCATED;
+        if (operation instanceof AddOperation)
+            return Kind.ADD;
+        if (operation instanceof CopyOperation)
+            return Kind.COPY;
+        if (operation instanceof MoveOperation)
+            return Kind.MOVE;
+        if (operation instanceof RemoveOperation)
+            return Kind.REMOVE;
+        if (operation instanceof ReplaceOperation)
+            return Kind.REPLACE;
+        if (operation instanceof TestOperation)
+            return Kind.TEST;
+        return Kind.OTHER;
+    }
+
+    private static JsonNode existing(final JsonNode root, final Token[] tokens)
+            throws JsonPatchException {
+        final JsonNode ret = resolve(root, tokens);
+        if (ret == null)
+            throw new JsonPatchException(BUNDLE.getMessage(
+                    "jsonPatch.noSuchPath"));
+        return ret;
+    }
+
+    /*
+     * The root may be missing, if removed by a previous operation
+     */
+    @Nullable
+    private static JsonNode resolve(final JsonNode root, final Token[] tokens) {
+        JsonNode ret = root.isMissingNode() ? null : root;
+
+        for (int i = 0; i < tokens.length && ret != null; i++)
+            ret = child(ret, tokens[i]);
+
+        return ret;
+    }
+
+    @Nullable
+    private static JsonNode child(final JsonNode node, final Token token) {
+        if (node.isObject())
+            return node.get(token.raw);
+        if (!node.isArray())
+            return null;
+        return token.index >= 0 && token.index < node.size()
+                ? node.get(token.index) : null;
+    }
+
+    private static void remove(final JsonNode parentNode, final Token token) {
+        if (parentNode.isObject())
+            ((ObjectNode) parentNode).remove(token.raw);
+        else
+            ((ArrayNode) parentNode).remove(token.index);
+    }
+
+    private static List<String> raw(final JsonPointerCustom pointer) {
+        final List<String> ret = new ArrayList<String>();
+        for (final TokenResolver<JsonNode> resolver : pointer)
+            ret.add(resolver.getToken().getRaw());
+        return ret;
+    }
+
+    private static Token[] tokens(final List<String> raw) {
+        final Token[] ret = new Token[raw.size()];
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = new Token(raw.get(i));
+        return ret;
+    }
+}
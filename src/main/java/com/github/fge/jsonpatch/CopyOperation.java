@@ -56,11 +56,18 @@ public final class CopyOperation
     public JsonNode apply(final JsonNode node)
         throws JsonPatchException
     {
-        final JsonNode dupData = from.path(node).deepCopy();
+        return applyInPlace(node.deepCopy());
+    }
+
+    @Override
+    JsonNode applyInPlace(final JsonNode node)
+        throws JsonPatchException
+    {
+        final JsonNode dupData = from.path(node);
         if (dupData.isMissingNode())
             throw new JsonPatchException(BUNDLE.getMessage(
                 "jsonPatch.noSuchPath"));
-        return new AddOperation(path, dupData ).apply(node);
+        return AddOperation.add(node, path, dupData.deepCopy());
     }
 
     @Override
@@ -154,17 +154,93 @@ public final class JsonPatch
         return ret;
     }
 
+    /**
+     * Apply this patch to a copy of a JSON value
+     *
+     * <p>The result is the same as with {@link #apply(JsonNode)}, and the
+     * value is not modified either; but the value is copied only once, and all
+     * operations are then applied to that copy, instead of each operation
+     * copying the result of the previous one.</p>
+     *
+     * @param node the value to apply the patch to
+     * @return the patched JSON value
+     * @throws JsonPatchException   failed to apply patch
+     * @throws NullPointerException input is null
+     * @since 1.14
+     */
+    public JsonNode applyOnCopy(final JsonNode node)
+            throws JsonPatchException {
+        BUNDLE.checkNotNull(node, "jsonPatch.nullInput");
+        return applyInPlace(node.deepCopy());
+    }
+
+    /**
+     * Apply this patch to a JSON value, modifying it
+     *
+     * <p>The value is not copied at all: the caller must own it. If an
+     * operation fails, the value is left as the previous operations have
+     * modified it; use {@link #applyOnCopy(JsonNode)} if the value must be
+     * left untouched in that case.</p>
+     *
+     * <p>Note that the returned value is not the given value if the patch
+     * replaces or removes the whole document.</p>
+     *
+     * @param node the value to apply the patch to
+     * @return the patched JSON value
+     * @throws JsonPatchException   failed to apply patch
+     * @throws NullPointerException input is null
+     * @since 1.14
+     */
+    public JsonNode applyInPlace(final JsonNode node)
+            throws JsonPatchException {
+        BUNDLE.checkNotNull(node, "jsonPatch.nullInput");
+        JsonNode ret = node;
+        for (final JsonPatchOperation operation : operations)
+            ret = operation.applyInPlace(ret);
+        return ret;
+    }
+
+    /**
+     * Apply this patch to a JSON value, possibly ignoring missing paths
+     *
+     * <p>Operations whose path uses {@code ?} find the array element they
+     * apply to by value. Arrays are indexed by the values of the locators used
+     * on them, and the index is kept up to date as the patch adds and removes
+     * elements, so that each such operation takes constant time rather than
+     * scanning the array.</p>
+     *
+     * <p>The value is not modified: it is copied once, and the patch then
+     * applied to the copy.</p>
+     *
+     * @param node the value to apply the patch to
+     * @param flag if false, operations whose path does not exist are ignored
+     * @return the patched JSON value
+     * @throws JsonPatchException   failed to apply patch
+     * @throws NullPointerException input is null
+     */
     @Override
     public JsonNode apply(JsonNode node, boolean flag) throws JsonPatchException {
         BUNDLE.checkNotNull(node, "jsonPatch.nullInput");
-        JsonNode ret = node;
+        final ValueLocatorIndex index = new ValueLocatorIndex();
+        JsonNode ret = node.deepCopy();
 
         for (final JsonPatchOperation operation : operations)
-            ret = operation.apply(ret, flag);
+            ret = operation.apply(ret, flag, index);
 
         return ret;
     }
 
+    /**
+     * Prepare this patch for repeated application
+     *
+     * @return an immutable, thread safe, compiled form of this patch
+     * @see CompiledPatch
+     * @since 1.14
+     */
+    public CompiledPatch compile() {
+        return new CompiledPatch(operations);
+    }
+
     public final List<JsonPatchOperation> getOperations() {
         return operations;
     }
@@ -108,6 +108,45 @@ public abstract class JsonPatchOperation
     public abstract JsonNode apply(final JsonNode node, boolean flag)
             throws JsonPatchException;
 
+    /**
+     * Apply this operation to a JSON value which may be modified
+     *
+     * <p>Unlike {@link #apply(JsonNode)}, operations overriding this method do
+     * not copy the value first; on failure, the value is left as it was. All
+     * operations of this package do; by default, this delegates to {@link
+     * #apply(JsonNode)}.</p>
+     *
+     * @param node the value to patch
+     * @return the patched value; this is the value itself unless it was
+     * replaced as a whole
+     * @throws JsonPatchException operation failed to apply to this value
+     */
+    JsonNode applyInPlace(final JsonNode node)
+            throws JsonPatchException {
+        return apply(node);
+    }
+
+    /**
+     * Apply this operation as part of a patch, modifying the value
+     *
+     * <p>Operations whose path uses {@code ?} to locate an array element by
+     * value find that element through the index, and keep it up to date. By
+     * default, this clears the index and delegates to {@link
+     * #apply(JsonNode, boolean)}.</p>
+     *
+     * @param node the value to patch, owned by the patch
+     * @param flag whether to fail if the path does not exist
+     * @param index the array index of this patch application
+     * @return the patched value
+     * @throws JsonPatchException operation failed to apply to this value
+     */
+    JsonNode apply(final JsonNode node, final boolean flag,
+                   final ValueLocatorIndex index)
+            throws JsonPatchException {
+        index.clear();
+        return apply(node, flag);
+    }
+
     public final String getOp() {
         return op;
     }
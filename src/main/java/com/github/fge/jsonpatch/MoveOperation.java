@@ -23,9 +23,15 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
 
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 
 /**
  * JSON Patch {@code move} operation
@@ -76,19 +82,88 @@ public final class MoveOperation
     @Override
     public JsonNode apply(final JsonNode node)
             throws JsonPatchException {
+        return applyInPlace(node.deepCopy());
+    }
+
+    /*
+     * Whether the value can be added back depends on its removal (see above);
+     * if it cannot, the removal is undone, and the moved value put back where
+     * it was.
+     */
+    @Override
+    JsonNode applyInPlace(final JsonNode node)
+            throws JsonPatchException {
         if (from.equals(path))
-            return node.deepCopy();
+            return node;
         final JsonNode movedNode = from.path(node);
         if (movedNode.isMissingNode())
             throw new JsonPatchException(BUNDLE.getMessage(
                     "jsonPatch.noSuchPath"));
+        if (from.isEmpty())
+            throw new JsonPatchException(BUNDLE.getMessage(
+                    "jsonPatch.noSuchParent"));
 
-        //value_locator = new ObjectMapper().createObjectNode();
-        //final JsonPatchOperation remove = new RemoveOperation(from, value_locator);
-        final JsonPatchOperation add = new AddOperation(path, movedNode);
+        final JsonNode parentNode = from.parent().get(node);
+        final String raw = Iterables.getLast(from).getToken().getRaw();
+
+        if (parentNode.isArray()) {
+            final int index = Integer.parseInt(raw);
+            ((ArrayNode) parentNode).remove(index);
+            try {
+                return AddOperation.add(node, path, movedNode);
+            } catch (JsonPatchException e) {
+                ((ArrayNode) parentNode).insert(index, movedNode);
+                throw e;
+            }
+        }
+
+        final ObjectNode object = (ObjectNode) parentNode;
+        final String next = nextMember(object, raw);
+        object.remove(raw);
+        try {
+            return AddOperation.add(node, path, movedNode);
+        } catch (JsonPatchException e) {
+            restore(object, raw, movedNode, next);
+            throw e;
+        }
+    }
+
+    @Nullable
+    static String nextMember(final ObjectNode object,
+                                     final String name) {
+        final Iterator<String> names = object.fieldNames();
+        while (names.hasNext())
+            if (names.next().equals(name))
+                return names.hasNext() ? names.next() : null;
         return null;
     }
 
+    /*
+     * Objects cannot insert members: members following the moved one are
+     * removed, then appended again after it
+     */
+    static void restore(final ObjectNode object, final String name,
+                                final JsonNode value,
+                                @Nullable final String next) {
+        final Map<String, JsonNode> following
+                = new LinkedHashMap<String, JsonNode>();
+        if (next != null) {
+            final Iterator<Map.Entry<String, JsonNode>> members
+                    = object.fields();
+            Map.Entry<String, JsonNode> member;
+            boolean found = false;
+            while (members.hasNext()) {
+                member = members.next();
+                found = found || member.getKey().equals(next);
+                if (found)
+                    following.put(member.getKey(), member.getValue());
+            }
+            object.remove(following.keySet());
+        }
+        object.set(name, value);
+        object.setAll(following);
+    }
+
     @Override
     public JsonNode apply(JsonNode node, boolean flag) throws JsonPatchException {
         if (from.equals(path))
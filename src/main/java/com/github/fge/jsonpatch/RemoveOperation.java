@@ -62,39 +62,24 @@ public final class RemoveOperation extends JsonPatchOperation {
         super("remove", path,originalValue);
     }
 
-    private int getNodeToRemove(JsonNode valueLocatorNode, ArrayNode array) {
-
-        if (array == null) return -1;
-
-        for (int i = 0; i < array.size(); i++) {
-            JsonNode currentNode = array.get(i);
-            ObjectMapper mapper = new ObjectMapper();
-            //convert valueLocatorNode to map
-            Map<String, Object> valueLocatorMap = mapper.convertValue(valueLocatorNode, new TypeReference<Map<String, Object>>() {
-            });
-            //make flag true
-            boolean flag = true;
-            //check if current node has value that are equal to value locator node
-            for (Map.Entry<String, Object> entry : valueLocatorMap.entrySet()) {
-                String currentKey = entry.getKey();
-                //if keys are present
-                if (!valueLocatorNode.get(currentKey).equals(currentNode.get(currentKey))) {
-                    flag = false;
-                    break;
-                }
-            }
-            //if all values that are in the value locator node are present then return the index
-            if (flag) return i;
-        }
-        //if node or path not found
-        return -1;
+    @Override
+    public JsonNode apply(final JsonNode node) throws JsonPatchException {
+        return remove(node, true);
     }
 
     @Override
-    public JsonNode apply(final JsonNode node) throws JsonPatchException {
+    JsonNode applyInPlace(final JsonNode node) throws JsonPatchException {
+        return remove(node, false);
+    }
+
+    private JsonNode remove(final JsonNode node, final boolean copy) throws JsonPatchException {
+        return remove(node, path, copy);
+    }
+
+    private static JsonNode remove(final JsonNode node, final JsonPointerCustom path, final boolean copy) throws JsonPatchException {
         if (path.isEmpty()) return MissingNode.getInstance();
         if (path.path(node).isMissingNode()) throw new JsonPatchException(BUNDLE.getMessage("jsonPatch.noSuchPath"));
-        final JsonNode ret = node.deepCopy();
+        final JsonNode ret = copy ? node.deepCopy() : node;
         final JsonNode parentNode = path.parent().get(ret);
         final String raw = Iterables.getLast(path).getToken().getRaw();
         if (parentNode.isObject()) ((ObjectNode) parentNode).remove(raw);
@@ -127,45 +112,45 @@ public final class RemoveOperation extends JsonPatchOperation {
 
     @Override
     public JsonNode apply(JsonNode node, boolean flag) throws JsonPatchException {
-//        if (path == null || value_locator == null) {
-//            applyStrictValidation(flag);
-//            return node;
-//        }
-//        JsonNode result;
-//        //see if path is null and check if its has ?
-//        if (path.toString().contains("?")) {
-//            //get the value locator
-//            JsonNode valueLocatorNode = value_locator.deepCopy();
-//            JsonPointerCustom arrayNodePath = null;
-//            try {
-//                //get the path before ? i.e.>> array node
-//                arrayNodePath = JsonPointerCustom.getBeforeUnknown(path.toString());
-//            } catch (JsonPointerException e) {
-//                applyStrictValidation(flag);
-//            }
-//            String raw = null;
-//            //get the raw representation of the field i.e >> array node field
-//            if (arrayNodePath != null) {
-//                raw = Iterables.getLast(arrayNodePath).getToken().getRaw();
-//                //get the array node
-//                ArrayNode arrayNode = (ArrayNode) node.get(raw);
-//                if (arrayNode == null) {
-//                    applyStrictValidation(flag);
-//                    return node;
-//                }
-//                //taking index of node that we want to remove using valueLocatorNode
-//                int toRemove = getNodeToRemove(valueLocatorNode, arrayNode);
-//                // if its not present then throw exception
-//                if (toRemove == -1) applyStrictValidation(flag);
-//                //remove the node
-//                arrayNode.remove(toRemove);
-//
-//            }
-//            result = node;
-//        } else {
-//            result = apply(node);
-//        }
-        return null;
+        return apply(node.deepCopy(), flag, new ValueLocatorIndex());
+    }
+
+    /*
+     * With a "?" path, the element to remove (or to remove a member from) is
+     * the first one of the array matching the original value
+     */
+    @Override
+    JsonNode apply(final JsonNode node, final boolean flag, final ValueLocatorIndex index) throws JsonPatchException {
+        if (!path.hasUnknown()) {
+            index.clear();
+            if (path.path(node).isMissingNode()) {
+                applyStrictValidation(flag);
+                return node;
+            }
+            return remove(node, false);
+        }
+        final ValueLocatorIndex.Elements elements = index.elementsAt(node, path);
+        final int slot = elements == null ? -1 : elements.find(originalValue);
+        if (slot == -1) {
+            applyStrictValidation(flag);
+            return node;
+        }
+        final JsonPointerCustom rest = path.afterUnknown();
+        if (rest.isEmpty()) {
+            elements.remove(slot);
+            return node;
+        }
+        final JsonNode element = elements.get(slot);
+        if (rest.path(element).isMissingNode()) {
+            applyStrictValidation(flag);
+            return node;
+        }
+        final String member = rest.iterator().next().getToken().getRaw();
+        elements.unindex(slot, member);
+        remove(element, rest, false);
+        elements.reindex(slot, member);
+        elements.located(originalValue, slot);
+        return node;
     }
 
     @Override
@@ -21,18 +21,13 @@ package com.github.fge.jsonpatch;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
-import com.github.fge.jackson.jsonpointer.JsonPointerException;
 import com.sun.org.slf4j.internal.Logger;
 import com.sun.org.slf4j.internal.LoggerFactory;
 
-import java.util.Map;
-
 
 /**
  * JSON Patch {@code replace} operation
@@ -60,7 +55,17 @@ public final class ReplaceOperation
     @Override
     public JsonNode apply(final JsonNode node)
             throws JsonPatchException {
+        return replace(node, true);
+    }
+
+    @Override
+    JsonNode applyInPlace(final JsonNode node)
+            throws JsonPatchException {
+        return replace(node, false);
+    }
 
+    private JsonNode replace(final JsonNode node, final boolean copy)
+            throws JsonPatchException {
         if (path.path(node).isMissingNode())
             throw new JsonPatchException(BUNDLE.getMessage(
                     "jsonPatch.noSuchPath"));
@@ -68,7 +73,7 @@ public final class ReplaceOperation
         final JsonNode replacement = value.deepCopy();
         if (path.isEmpty())
             return replacement;
-        final JsonNode ret = node.deepCopy();
+        final JsonNode ret = copy ? node.deepCopy() : node;
         final JsonNode parent = path.parent().get(ret);
         final String rawToken = Iterables.getLast(path).getToken().getRaw();
         if (parent.isObject())
@@ -78,33 +83,6 @@ public final class ReplaceOperation
         return ret;
     }
 
-    private int getNodeToUpdate(JsonNode valueLocatorNode, ArrayNode array) {
-        if (array == null) return -1;
-
-        for (int i = 0; i < array.size(); i++) {
-            JsonNode currentNode = array.get(i);
-            ObjectMapper mapper = new ObjectMapper();
-            //convert valueLocatorNode to map
-            Map<String, Object> valueLocatorMap = mapper.convertValue(valueLocatorNode, new TypeReference<Map<String, Object>>() {
-            });
-            //make flag true
-            boolean flag = true;
-            //check if current node has value that are equal to value locator node
-            for (Map.Entry<String, Object> entry : valueLocatorMap.entrySet()) {
-                String currentKey = entry.getKey();
-                //if keys are present
-                if (!valueLocatorNode.get(currentKey).equals(currentNode.get(currentKey))) {
-                    flag = false;
-                    break;
-                }
-            }
-            //if all values that are in the value locator node are present then return the index
-            if (flag) return i;
-        }
-        //if node or path not found
-        return -1;
-    }
-
     private void applyStrictValidation(boolean flag) throws JsonPatchException {
         if (flag) {
             throw new JsonPatchException(BUNDLE.getMessage("jsonPatch.noSuchPath"));
@@ -113,96 +91,64 @@ public final class ReplaceOperation
         }
     }
 
-    private JsonNode getNodeToUpdate(boolean flag, JsonNode valueLocatorNode, ArrayNode arrayNode) throws JsonPatchException {
-        //taking index of nodes that we want to update using valueLocatorNode
-        int indToUpdate = getNodeToUpdate(valueLocatorNode, arrayNode);
-        if (indToUpdate == -1) applyStrictValidation(flag);
-        //get that node which we want to update
-        return arrayNode.get(indToUpdate);
+    @Override
+    public JsonNode apply(JsonNode node, boolean flag) throws JsonPatchException {
+        return apply(node.deepCopy(), flag, new ValueLocatorIndex());
     }
 
-    private ArrayNode getArrayNode(JsonNode node, boolean flag) throws JsonPatchException {
-        //get pointer of array node in which we have the node that we will update using value field
-
-        JsonPointerCustom arrayNodePath = null;
-        try {
-            arrayNodePath = JsonPointerCustom.getBeforeUnknown(path.toString());
-        } catch (JsonPointerException e) {
-            //logger.error(e.getMessage());
+    /*
+     * With a "?" path, the element to update is the first one of the array
+     * matching the original value. As before, a member missing from that
+     * element is added. The element is still found by that original value
+     * afterwards, for the other operations of the patch on it.
+     */
+    @Override
+    JsonNode apply(final JsonNode node, final boolean flag,
+                   final ValueLocatorIndex index)
+            throws JsonPatchException {
+        if (!path.hasUnknown()) {
+            index.clear();
+            if (path.path(node).isMissingNode()) {
+                applyStrictValidation(flag);
+                return node;
+            }
+            return replace(node, false);
         }
 
-        //getting the raw token of that array node
-        String raw = null;
-        if (arrayNodePath != null) {
-            raw = Iterables.getLast(arrayNodePath).getToken().getRaw();
-        } else
+        final ValueLocatorIndex.Elements elements
+                = index.elementsAt(node, path);
+        final int slot = elements == null ? -1 : elements.find(originalValue);
+        if (slot == -1) {
             applyStrictValidation(flag);
-        //get the arrayNode
-        return (ArrayNode) node.get(raw);
-    }
-
-    @Override
-    public JsonNode apply(JsonNode node, boolean flag) throws JsonPatchException {
-//
-//        if (path == null || value_locator == null) {
-//            applyStrictValidation(flag);
-//            return node;
-//        }
-//        JsonNode result = null;
-//
-//        //if path is not null
-//        if (path.toString().contains("?")) {
-//
-//            //get value locator copy
-//            JsonNode valueLocatorNode = value_locator.deepCopy();
-//
-//            //get arrayNode in which we will find the node to update
-//            ArrayNode arrayNode = getArrayNode(node, flag);
-//
-//            if (arrayNode == null) {
-//                applyStrictValidation(flag);
-//                return node;
-//            }
-//
-//            //getting the actual node to update
-//            JsonNode nodeToUpdate = getNodeToUpdate(flag, valueLocatorNode, arrayNode);
-//
-//            if (nodeToUpdate == null) return node;
-//            //getting the field in which update is need to be made
-//            String rawTokenField = getRawTokenFieldToUpdate();
-//
-//            //update the node >> updatedNode
-//            if (nodeToUpdate.isObject() && rawTokenField != null) {
-//                ((ObjectNode) nodeToUpdate).replace(rawTokenField, value);
-//            } else if (rawTokenField != null) {
-//                ((ArrayNode) nodeToUpdate).set(Integer.parseInt(rawTokenField), value);
-//            }
-//
-//            result = node;
-//
-//        } else {
-//            result = apply(node);
-//        }
-        return null;
-    }
+            return node;
+        }
 
-    private String getRawTokenFieldToUpdate() {
-        //get the pointer of the node where we want to update value of the value field
-        JsonPointerCustom toUpdateNodePointer = null;
-        try {
-            //taking pointer by using getAfterUnknown function which will return /Entitlements/?/Entitlement Key >> Entitlement Key
-            toUpdateNodePointer = JsonPointerCustom.getAfterUnknown(path.toString());
-        } catch (JsonPointerException e) {
-           // logger.error("JsonPointerException: " + e.getMessage());
+        final JsonPointerCustom rest = path.afterUnknown();
+        if (rest.isEmpty()) {
+            elements.set(slot, value.deepCopy());
+            elements.located(originalValue, slot);
+            return node;
         }
-        //get raw token to update the specified field
-        String rawToken = null;
-        if (toUpdateNodePointer != null) {
-            rawToken = Iterables.getLast(toUpdateNodePointer).getToken().getRaw();
+
+        final JsonNode element = elements.get(slot);
+        final JsonNode parent = rest.parent().path(element);
+        final String rawToken = Iterables.getLast(rest).getToken().getRaw();
+        if (!parent.isObject() && rest.path(element).isMissingNode()) {
+            applyStrictValidation(flag);
+            return node;
         }
-        return rawToken;
-    }
 
+        final String member = rest.iterator().next().getToken().getRaw();
+        elements.unindex(slot, member);
+        if (parent.isObject())
+            ((ObjectNode) parent).replace(rawToken, value.deepCopy());
+        else
+            ((ArrayNode) parent).set(Integer.parseInt(rawToken),
+                    value.deepCopy());
+        elements.reindex(slot, member);
+        elements.located(originalValue, slot);
+        return node;
+    }
 
 }
 
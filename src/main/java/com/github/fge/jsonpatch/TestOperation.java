@@ -54,6 +54,13 @@ public final class TestOperation
     @Override
     public JsonNode apply(final JsonNode node)
         throws JsonPatchException
+    {
+        return applyInPlace(node).deepCopy();
+    }
+
+    @Override
+    JsonNode applyInPlace(final JsonNode node)
+        throws JsonPatchException
     {
         final JsonNode tested = path.path(node);
         if (tested.isMissingNode())
@@ -62,7 +69,7 @@ public final class TestOperation
         if (!EQUIVALENCE.equivalent(tested, value))
             throw new JsonPatchException(BUNDLE.getMessage(
                 "jsonPatch.valueTestFailure"));
-        return node.deepCopy();
+        return node;
     }
 
     @Override
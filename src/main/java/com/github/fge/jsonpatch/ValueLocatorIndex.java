@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Index of array elements by value, for operations using {@code ?} paths
+ *
+ * <p>An operation with a path such as {@code /Entitlements/?/Entitlement Key}
+ * applies to the first element of the array at {@code /Entitlements} which has
+ * all members of the operation's value locator, with equal values. Instead of
+ * scanning the array for each such operation, the elements of an array are
+ * indexed by the scalar values of their members, one member name at a time,
+ * the first time a locator with that member is used on it; candidates are then
+ * taken from the most selective member of the locator, and checked against
+ * the others.</p>
+ *
+ * <p>One instance is used for a whole patch application, and is kept up to date
+ * by the operations removing, appending or modifying elements through it. Only
+ * the array used last is indexed: modifying one of its elements also modifies
+ * the arrays containing it, and possibly arrays contained in that element.
+ * Operations modifying the document otherwise must {@link #clear()} the
+ * index.</p>
+ *
+ * <p>Patches generated by {@link com.github.fge.jsonpatch.diff.JsonDiff} list
+ * the operations on a given array together, so that the array is only indexed
+ * once. All operations on one element carry the element as it was before the
+ * patch as their locator: an element modified through a locator is therefore
+ * still found by that locator afterwards.</p>
+ */
+@NotThreadSafe
+final class ValueLocatorIndex {
+    @Nullable
+    private Elements current;
+
+    /**
+     * Return the indexed elements of an array
+     *
+     * @param array the array
+     * @return the elements, indexed on demand
+     */
+    Elements elementsOf(final ArrayNode array) {
+        if (current == null || current.array != array)
+            current = new Elements(array);
+        return current;
+    }
+
+    /**
+     * Return the indexed elements of the array a {@code ?} path goes through
+     *
+     * @param node the patched value
+     * @param path the path
+     * @return the elements, or {@code null} if there is no such array
+     */
+    @Nullable
+    Elements elementsAt(final JsonNode node, final JsonPointerCustom path) {
+        final JsonNode array = path.beforeUnknown().path(node);
+        return array.isArray() ? elementsOf((ArrayNode) array) : null;
+    }
+
+    /**
+     * Record an element appended to an array
+     *
+     * @param array the array
+     */
+    void appended(final ArrayNode array) {
+        if (current != null && current.array == array)
+            current.appended();
+        else
+            current = null;
+    }
+
+    /**
+     * Forget about the indexed array
+     */
+    void clear() {
+        current = null;
+    }
+
+    /**
+     * The elements of one array
+     *
+     * <p>Each element is given a slot, in array order, when it is first seen;
+     * slots of removed elements are never reused, so that the position of an
+     * element in the array is the number of live slots before its own.</p>
+     */
+    static final class Elements {
+        private final ArrayNode array;
+        private final List<JsonNode> slots;
+        /*
+         * Only scalar values are indexed: containers may be modified in place
+         */
+        private final Map<String, Map<JsonNode, TreeSet<Integer>>> indices
+                = new HashMap<String, Map<JsonNode, TreeSet<Integer>>>();
+        /*
+         * Slots of elements modified through a locator, by locator
+         */
+        private final Map<JsonNode, Integer> located
+                = new HashMap<JsonNode, Integer>();
+
+        private boolean[] live;
+        /*
+         * Fenwick tree over live slots
+         */
+        private int[] counts;
+
+        private Elements(final ArrayNode array) {
+            this.array = array;
+            final int size = array.size();
+            slots = new ArrayList<JsonNode>(size);
+            for (final JsonNode element : array)
+                slots.add(element);
+            live = new boolean[Math.max(size, 8)];
+            counts = new int[live.length + 1];
+            for (int i = 0; i < size; i++) {
+                live[i] = true;
+                count(i, 1);
+            }
+        }
+
+        /**
+         * Find the first element matching a value locator
+         *
+         * <p>An element modified through a locator is found by that locator
+         * even if it no longer matches it.</p>
+         *
+         * @param locator the value locator (may be null)
+         * @return the slot of that element, or -1 if there is none
+         */
+        int find(@Nullable final JsonNode locator) {
+            if (locator == null || !locator.isObject())
+                return -1;
+
+            final Integer slot = located.get(locator);
+            if (slot != null && live[slot])
+                return slot;
+
+            Collection<Integer> candidates = null;
+            Map.Entry<String, JsonNode> member;
+            TreeSet<Integer> matches;
+            final Iterator<Map.Entry<String, JsonNode>> members
+                    = locator.fields();
+            while (members.hasNext()) {
+                member = members.next();
+                if (!member.getValue().isValueNode())
+                    continue;
+                matches = index(member.getKey()).get(member.getValue());
+                if (matches == null)
+                    return -1;
+                if (candidates == null || matches.size() < candidates.size())
+                    candidates = matches;
+            }
+
+            if (candidates == null)
+                candidates = liveSlots();
+
+            for (final int candidate : candidates)
+                if (matches(slots.get(candidate), locator))
+                    return candidate;
+            return -1;
+        }
+
+        /**
+         * Record that the element in a slot was modified through a locator
+         *
+         * @param locator the value locator
+         * @param slot the slot
+         */
+        void located(final JsonNode locator, final int slot) {
+            located.put(locator, slot);
+        }
+
+        /**
+         * Return the element in a slot
+         *
+         * @param slot the slot
+         * @return the element
+         */
+        JsonNode get(final int slot) {
+            return slots.get(slot);
+        }
+
+        /**
+         * Remove the element in a slot from the array
+         *
+         * @param slot the slot
+         */
+        void remove(final int slot) {
+            unindex(slot, null);
+            array.remove(positionOf(slot));
+            live[slot] = false;
+            count(slot, -1);
+        }
+
+        /**
+         * Replace the element in a slot
+         *
+         * @param slot the slot
+         * @param element the new element
+         */
+        void set(final int slot, final JsonNode element) {
+            unindex(slot, null);
+            array.set(positionOf(slot), element);
+            slots.set(slot, element);
+            reindex(slot, null);
+        }
+
+        /**
+         * Take the element in a slot out of the indices depending on a member
+         *
+         * <p>This must be called before that member of the element is
+         * modified, and {@link #reindex(int, String)} after.</p>
+         *
+         * @param slot the slot
+         * @param name the member name, or {@code null} for all indices
+         */
+        void unindex(final int slot, @Nullable final String name) {
+            final JsonNode element = slots.get(slot);
+            if (!element.isObject())
+                return;
+            Map<JsonNode, TreeSet<Integer>> index;
+            JsonNode value;
+            TreeSet<Integer> matches;
+            for (final Map.Entry<String, Map<JsonNode, TreeSet<Integer>>> entry
+                    : indices.entrySet()) {
+                if (name != null && !entry.getKey().equals(name))
+                    continue;
+                value = element.get(entry.getKey());
+                if (value == null || !value.isValueNode())
+                    continue;
+                index = entry.getValue();
+                matches = index.get(value);
+                matches.remove(slot);
+                if (matches.isEmpty())
+                    index.remove(value);
+            }
+        }
+
+        /**
+         * Put back the element in a slot into the indices depending on a member
+         *
+         * @param slot the slot
+         * @param name the member name, or {@code null} for all indices
+         * @see #unindex(int, String)
+         */
+        void reindex(final int slot, @Nullable final String name) {
+            for (final Map.Entry<String, Map<JsonNode, TreeSet<Integer>>> entry
+                    : indices.entrySet())
+                if (name == null || entry.getKey().equals(name))
+                    add(entry.getValue(), entry.getKey(), slot);
+        }
+
+        private void appended() {
+            final int slot = slots.size();
+            slots.add(array.get(array.size() - 1));
+            if (slot == live.length) {
+                live = Arrays.copyOf(live, slot * 2);
+                counts = new int[live.length + 1];
+                for (int i = 0; i < slot; i++)
+                    if (live[i])
+                        count(i, 1);
+            }
+            live[slot] = true;
+            count(slot, 1);
+            reindex(slot, null);
+        }
+
+        private Map<JsonNode, TreeSet<Integer>> index(final String name) {
+            Map<JsonNode, TreeSet<Integer>> ret = indices.get(name);
+            if (ret != null)
+                return ret;
+            ret = new HashMap<JsonNode, TreeSet<Integer>>();
+            final int size = slots.size();
+            for (int slot = 0; slot < size; slot++)
+                if (live[slot])
+                    add(ret, name, slot);
+            indices.put(name, ret);
+            return ret;
+        }
+
+        private void add(final Map<JsonNode, TreeSet<Integer>> index,
+                         final String name, final int slot) {
+            final JsonNode element = slots.get(slot);
+            if (!element.isObject())
+                return;
+            final JsonNode value = element.get(name);
+            if (value == null || !value.isValueNode())
+                return;
+            TreeSet<Integer> matches = index.get(value);
+            if (matches == null) {
+                matches = new TreeSet<Integer>();
+                index.put(value, matches);
+            }
+            matches.add(slot);
+        }
+
+        private List<Integer> liveSlots() {
+            final List<Integer> ret = new ArrayList<Integer>();
+            final int size = slots.size();
+            for (int slot = 0; slot < size; slot++)
+                if (live[slot])
+                    ret.add(slot);
+            return ret;
+        }
+
+        private int positionOf(final int slot) {
+            int ret = 0;
+            for (int i = slot; i > 0; i -= i & -i)
+                ret += counts[i];
+            return ret;
+        }
+
+        private void count(final int slot, final int delta) {
+            for (int i = slot + 1; i < counts.length; i += i & -i)
+                counts[i] += delta;
+        }
+    }
+
+    private static boolean matches(final JsonNode element,
+                                   final JsonNode locator) {
+        if (!element.isObject())
+            return false;
+        final Iterator<Map.Entry<String, JsonNode>> members = locator.fields();
+        Map.Entry<String, JsonNode> member;
+        while (members.hasNext()) {
+            member = members.next();
+            if (!member.getValue().equals(element.get(member.getKey())))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The identity keys of keyed arrays, by array pointer
+ *
+ * <p>Pointers to arrays nested in elements of other keyed arrays use {@code
+ * ?} as the element token; for instance, {@code /Entitlements/?/Attributes}
+ * designates the {@code Attributes} array of every entitlement.</p>
+ *
+ * <p>Arrays which are members of the root object and which are not listed
+ * here are keyed on the default entitlement fields ({@code Application Key},
+ * {@code Entitlement Type} and {@code Entitlement Name}).</p>
+ */
+@Immutable
+final class ArrayKeys {
+    private static final KeyExtractor DEFAULT_EXTRACTOR
+            = new KeyExtractor(Arrays.asList("Application Key",
+            "Entitlement Type", "Entitlement Name"));
+
+    private static final ArrayKeys DEFAULT = new ArrayKeys(
+            Collections.<JsonPointerCustom, KeyExtractor>emptyMap(),
+            Collections.<JsonPointerCustom>emptySet());
+
+    private final Map<JsonPointerCustom, KeyExtractor> extractors;
+    private final Set<JsonPointerCustom> ancestors;
+
+    private ArrayKeys(final Map<JsonPointerCustom, KeyExtractor> extractors,
+                      final Set<JsonPointerCustom> ancestors) {
+        this.extractors = extractors;
+        this.ancestors = ancestors;
+    }
+
+    /**
+     * Compile a map of key fields by array pointer
+     *
+     * @param map the map; may be null, in which case only the defaults apply
+     * @return the compiled keys
+     */
+    static ArrayKeys compile(@Nullable final Map<JsonPointerCustom, Set<String>> map) {
+        if (map == null || map.isEmpty())
+            return DEFAULT;
+
+        final Map<JsonPointerCustom, KeyExtractor> extractors = new HashMap<>();
+        final Set<JsonPointerCustom> ancestors = new HashSet<>();
+
+        JsonPointerCustom pointer;
+
+        for (final Map.Entry<JsonPointerCustom, Set<String>> entry : map.entrySet()) {
+            pointer = entry.getKey();
+            extractors.put(pointer, new KeyExtractor(entry.getValue()));
+            while (!pointer.isEmpty()) {
+                pointer = pointer.parent();
+                ancestors.add(pointer);
+            }
+        }
+
+        return new ArrayKeys(extractors, ancestors);
+    }
+
+    /**
+     * Return the key extractor for the array at a given pointer
+     *
+     * @param pointer the pointer to the array
+     * @return the extractor, or null if the array is not keyed
+     */
+    @Nullable
+    KeyExtractor extractorFor(final JsonPointerCustom pointer) {
+        return extractors.get(pointer);
+    }
+
+    /**
+     * Return the key extractor for an array member of the root object
+     *
+     * @param pointer the pointer to the array
+     * @return the extractor; the default one if the array is not listed
+     */
+    KeyExtractor rootExtractorFor(final JsonPointerCustom pointer) {
+        final KeyExtractor extractor = extractors.get(pointer);
+        return extractor != null ? extractor : DEFAULT_EXTRACTOR;
+    }
+
+    /**
+     * Tell whether keyed arrays exist below a given pointer
+     *
+     * @param pointer the pointer
+     * @return true if at least one keyed array pointer starts with it
+     */
+    boolean hasKeyedArraysBelow(final JsonPointerCustom pointer) {
+        return ancestors.contains(pointer);
+    }
+}
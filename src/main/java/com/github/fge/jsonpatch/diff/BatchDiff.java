@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchMessages;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+
+/**
+ * Diff of many (source, target) pairs on an executor
+ *
+ * <p>Pairs are given as {@link Map.Entry map entries}, the key being the
+ * source and the value being the target. Each pair is diffed as {@link
+ * JsonDiff#asJsonPatch(JsonNode, JsonNode)} or, for instances built with
+ * {@link #withKeys(Executor, int, Map)}, as {@link
+ * JsonDiff#asJsonPatch(JsonNode, JsonNode, Map)} would.</p>
+ *
+ * <p>At most {@code maxInFlight} diffs are submitted to the executor at any
+ * time, and at most as many pairs are read ahead of them when reading from an
+ * iterator, four times as many when diffing a collection: the
+ * work done on the calling thread is therefore bounded by the limit, not by
+ * the number of pairs. Among the pairs read, the largest documents, as
+ * estimated from their number of top level children, are submitted first, so
+ * that they do not end up running alone at the end of a batch.</p>
+ *
+ * <p>Instances are immutable and can be shared; the executor is never shut
+ * down by this class.</p>
+ *
+ * @since 1.14
+ */
+@ParametersAreNonnullByDefault
+public final class BatchDiff {
+    private static final MessageBundle BUNDLE
+            = MessageBundles.getBundle(JsonPatchMessages.class);
+
+    /*
+     * Read-ahead of collection diffs, as a multiple of the in-flight limit
+     */
+    private static final int READ_AHEAD = 4;
+
+    private final Executor executor;
+    private final int maxInFlight;
+    @Nullable
+    private final ArrayKeys keys;
+
+    private BatchDiff(final Executor executor, final int maxInFlight,
+                      @Nullable final ArrayKeys keys) {
+        BUNDLE.checkNotNull(executor, "common.nullArgument");
+        BUNDLE.checkArgumentPrintf(maxInFlight > 0, "batchDiff.invalidLimit",
+                maxInFlight);
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.keys = keys;
+    }
+
+    /**
+     * Create a batch diff generating plain JSON Patches
+     *
+     * @param executor the executor to run diffs on
+     * @param maxInFlight the maximum number of diffs submitted at once
+     * @return a new batch diff
+     * @throws IllegalArgumentException maxInFlight is not strictly positive
+     * @see JsonDiff#asJsonPatch(JsonNode, JsonNode)
+     */
+    public static BatchDiff of(final Executor executor, final int maxInFlight) {
+        return new BatchDiff(executor, maxInFlight, null);
+    }
+
+    /**
+     * Create a batch diff matching the elements of keyed arrays by identity
+     *
+     * @param executor the executor to run diffs on
+     * @param maxInFlight the maximum number of diffs submitted at once
+     * @param map the key fields of keyed arrays, by array pointer; may be null
+     * @return a new batch diff
+     * @throws IllegalArgumentException maxInFlight is not strictly positive
+     * @see JsonDiff#asJsonPatch(JsonNode, JsonNode, Map)
+     */
+    public static BatchDiff withKeys(final Executor executor,
+                                     final int maxInFlight,
+                                     @Nullable final Map<JsonPointerCustom, Set<String>> map) {
+        return new BatchDiff(executor, maxInFlight, ArrayKeys.compile(map));
+    }
+
+    /**
+     * Diff all pairs of a collection, and return the patches in input order
+     *
+     * <p>Since all pairs are already in memory, more of them are read ahead of
+     * the submitted diffs, so that the largest ones are more likely to be
+     * submitted first.</p>
+     *
+     * @param pairs the (source, target) pairs
+     * @return the patches, in the order of the pairs
+     * @throws RuntimeException the first failure, in input order, of a diff
+     * @throws IllegalStateException interrupted while waiting for a diff
+     */
+    public List<JsonPatch> diff(
+            final Collection<? extends Map.Entry<JsonNode, JsonNode>> pairs) {
+        BUNDLE.checkNotNull(pairs, "common.nullArgument");
+
+        final Result[] results = new Result[pairs.size()];
+        final int readAhead = (int) Math.min(
+                (long) maxInFlight * READ_AHEAD, Integer.MAX_VALUE);
+        final Iterator<Result> iterator
+                = new CompletionIterator(pairs.iterator(), readAhead);
+
+        Result result;
+
+        while (iterator.hasNext()) {
+            result = iterator.next();
+            results[result.index] = result;
+        }
+
+        final List<JsonPatch> ret = new ArrayList<JsonPatch>(results.length);
+
+        for (final Result r : results)
+            ret.add(r.getPatch());
+
+        return ret;
+    }
+
+    /**
+     * Diff pairs read from an iterator, and return the results as the diffs
+     * complete
+     *
+     * <p>The pairs are read, and the diffs submitted, as the returned iterator
+     * is consumed. Each result carries the index of its pair in the input.</p>
+     *
+     * @param pairs the (source, target) pairs
+     * @return an iterator over the results, in completion order; its {@code
+     * next()} method throws an {@link IllegalStateException} if interrupted
+     * while waiting for a diff
+     */
+    public Iterator<Result> diffAsCompleted(
+            final Iterator<? extends Map.Entry<JsonNode, JsonNode>> pairs) {
+        BUNDLE.checkNotNull(pairs, "common.nullArgument");
+        return new CompletionIterator(pairs, maxInFlight);
+    }
+
+    private JsonPatch diff(final JsonNode source, final JsonNode target) {
+        if (keys == null)
+            return JsonDiff.asJsonPatch(source, target);
+
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
+
+        final PatchBuilder builder = new PatchBuilder();
+
+        JsonDiff.generateKeyedDiffs(source, target, keys, builder);
+
+        return builder.getPatch();
+    }
+
+    /*
+     * Estimated size of a document, used to order diffs: this runs on the
+     * calling thread, so only the top level is looked at
+     */
+    private static long weight(@Nullable final JsonNode node) {
+        return node == null ? 0L : 1L + node.size();
+    }
+
+    /**
+     * The result of the diff of one pair
+     */
+    public static final class Result {
+        private final int index;
+        @Nullable
+        private final JsonPatch patch;
+        @Nullable
+        private final RuntimeException failure;
+
+        private Result(final int index, @Nullable final JsonPatch patch,
+                       @Nullable final RuntimeException failure) {
+            this.index = index;
+            this.patch = patch;
+            this.failure = failure;
+        }
+
+        /**
+         * Get the index of the pair in the input
+         *
+         * @return the index, starting from 0
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Get the generated patch
+         *
+         * @return the patch
+         * @throws RuntimeException the exception the diff failed with
+         */
+        public JsonPatch getPatch() {
+            if (failure != null)
+                throw failure;
+            return patch;
+        }
+
+        /**
+         * Get the exception the diff failed with, if any
+         *
+         * @return the exception, or null if the diff succeeded
+         */
+        @Nullable
+        public RuntimeException getFailure() {
+            return failure;
+        }
+    }
+
+    /*
+     * A pair read from the input, waiting to be submitted; the heaviest
+     * pairs come first, ties are broken by input order.
+     */
+    private static final class Pending implements Comparable<Pending> {
+        private final int index;
+        private final JsonNode source;
+        private final JsonNode target;
+        private final long weight;
+
+        private Pending(final int index,
+                        final Map.Entry<JsonNode, JsonNode> pair) {
+            this.index = index;
+            source = pair.getKey();
+            target = pair.getValue();
+            weight = weight(source) + weight(target);
+        }
+
+        @Override
+        public int compareTo(final Pending o) {
+            if (weight != o.weight)
+                return weight > o.weight ? -1 : 1;
+            return index < o.index ? -1 : index == o.index ? 0 : 1;
+        }
+    }
+
+    private final class CompletionIterator implements Iterator<Result> {
+        private final Iterator<? extends Map.Entry<JsonNode, JsonNode>> input;
+        private final int readAhead;
+        private final PriorityQueue<Pending> waiting;
+        private final CompletionService<Result> service;
+
+        private int nextIndex = 0;
+        private int inFlight = 0;
+
+        private CompletionIterator(
+                final Iterator<? extends Map.Entry<JsonNode, JsonNode>> input,
+                final int readAhead) {
+            this.input = input;
+            this.readAhead = readAhead;
+            waiting = new PriorityQueue<Pending>(Math.min(readAhead, 1024));
+            service = new ExecutorCompletionService<Result>(executor);
+        }
+
+        @Override
+        public boolean hasNext() {
+            read();
+            while (inFlight < maxInFlight && !waiting.isEmpty()) {
+                submit(waiting.remove());
+                read();
+            }
+            return inFlight > 0;
+        }
+
+        @Override
+        public Result next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            try {
+                final Result result = service.take().get();
+                inFlight--;
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                        BUNDLE.getMessage("batchDiff.interrupted"), e);
+            } catch (ExecutionException e) {
+                /* Results capture runtime exceptions; this is an Error */
+                throw (Error) e.getCause();
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void read() {
+            while (waiting.size() < readAhead && input.hasNext())
+                waiting.add(new Pending(nextIndex++, input.next()));
+        }
+
+        private void submit(final Pending pending) {
+            service.submit(new Callable<Result>() {
+                @Override
+                public Result call() {
+                    try {
+                        return new Result(pending.index,
+                                diff(pending.source, pending.target), null);
+                    } catch (RuntimeException e) {
+                        return new Result(pending.index, null, e);
+                    }
+                }
+            });
+            inFlight++;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/*
+ * Lazy iterator over the paths a diff changes: the walk is only advanced as
+ * far as needed to find the next path. No operation is built, and neither
+ * moves nor copies are looked for: a value moved elsewhere is reported at both
+ * its paths.
+ *
+ * Paths are those the operations would have. Consecutive identical paths are
+ * only reported once; removing the trailing elements of an array, for
+ * instance, is reported at the index of the first of them.
+ */
+final class ChangedPaths implements Iterator<JsonPointerCustom>, DiffListener {
+    private final Queue<JsonPointerCustom> ready
+            = new ArrayDeque<JsonPointerCustom>();
+
+    private final DiffWalker walker;
+
+    private JsonPointerCustom last;
+
+    /*
+     * The settings must not split containers: splits need a fork/join pool.
+     *
+     * Hashing both documents up front would walk them entirely before the
+     * first path is found; values are compared as the walk reaches them
+     * instead.
+     */
+    ChangedPaths(final JsonNode source, final JsonNode target,
+                 final WalkSettings settings) {
+        walker = new DiffWalker(this, SubtreeHashes.none(), source, target,
+                settings);
+    }
+
+    @Override
+    public void valueReplaced(final JsonPointerCustom pointer,
+                              final JsonNode oldValue, final JsonNode newValue) {
+        changed(pointer);
+    }
+
+    @Override
+    public void valueRemoved(final JsonPointerCustom pointer,
+                             final JsonNode value) {
+        changed(pointer);
+    }
+
+    @Override
+    public void valueAdded(final JsonPointerCustom pointer,
+                           final JsonNode value) {
+        changed(pointer);
+    }
+
+    @Override
+    public void elementRemoved(final JsonPointerCustom pointer,
+                               final JsonNode value) {
+        changed(pointer);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (ready.isEmpty())
+            if (!walker.step())
+                return false;
+        return true;
+    }
+
+    @Override
+    public JsonPointerCustom next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return ready.remove();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void changed(final JsonPointerCustom pointer) {
+        if (pointer.equals(last))
+            return;
+        ready.add(pointer);
+        last = pointer;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+/**
+ * The identity of an array element, as given by the values of its key fields
+ *
+ * <p>Values are extracted once, when the key is built, and the hash code is
+ * computed eagerly; keys are therefore cheap to use in hash based
+ * collections.</p>
+ *
+ * <p>A key field which is missing from the element (or an element which is
+ * not an object) is recorded as a {@code null} value. Two elements missing
+ * the same key fields, and agreeing on all others, have the same key.</p>
+ */
+@Immutable
+final class CompositeKey {
+    private final JsonNode[] values;
+    private final int hashCode;
+
+    private CompositeKey(final JsonNode[] values) {
+        this.values = values;
+        hashCode = Arrays.hashCode(values);
+    }
+
+    /**
+     * Extract the key of an array element
+     *
+     * @param element the element
+     * @param fields the names of the key fields
+     * @return the key
+     */
+    static CompositeKey of(final JsonNode element, final String[] fields) {
+        final int size = fields.length;
+        final JsonNode[] values = new JsonNode[size];
+
+        for (int i = 0; i < size; i++)
+            values[i] = element.get(fields[i]);
+
+        return new CompositeKey(values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(@Nullable final Object obj) {
+        if (obj == null)
+            return false;
+        if (this == obj)
+            return true;
+        if (getClass() != obj.getClass())
+            return false;
+        final CompositeKey other = (CompositeKey) obj;
+        return hashCode == other.hashCode
+                && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
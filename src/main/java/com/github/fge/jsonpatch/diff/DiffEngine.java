@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchMessages;
+import com.github.fge.jsonpatch.JsonPatchOperation;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A reusable JSON diff, configured once
+ *
+ * <p>An engine does, once and for all, the setup the static methods of {@link
+ * JsonDiff} do on each call: its {@link DiffOptions options} are compiled when
+ * it is created. Each thread using an engine also keeps the buffers of its
+ * last diff (the path being visited, the stack of node pairs to visit and the
+ * sets of member names being compared), so that services diffing documents in
+ * a loop do not allocate them again for each diff.</p>
+ *
+ * <p>With the default options, an engine generates the same patches as {@link
+ * JsonDiff#asJsonPatch(JsonNode, JsonNode)}. Options can also turn off the
+ * detection of moves or copies, when they are not needed: finding copy
+ * sources, in particular, takes an extra traversal of both documents.</p>
+ *
+ * <p>Engines are thread safe, and meant to be shared.</p>
+ *
+ * @since 1.14
+ */
+@ThreadSafe
+@ParametersAreNonnullByDefault
+public final class DiffEngine {
+    private static final MessageBundle BUNDLE
+            = MessageBundles.getBundle(JsonPatchMessages.class);
+    private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+    private final DiffOptions options;
+    private final WalkSettings settings;
+    @Nullable
+    private final ArrayKeys keys;
+
+    private final ThreadLocal<DiffWalker.Scratch> scratches
+            = new ThreadLocal<DiffWalker.Scratch>() {
+        @Override
+        protected DiffWalker.Scratch initialValue() {
+            return new DiffWalker.Scratch();
+        }
+    };
+
+    private DiffEngine(final DiffOptions options) {
+        this.options = options;
+
+        WalkSettings walkSettings = WalkSettings.SEQUENTIAL
+                .withMoves(options.isMoves())
+                .withCopies(options.isCopies())
+                .withMaxArrayEdits(options.getMaxArrayEdits())
+                .withIgnored(IgnoredPaths.compile(options.getIgnoredPaths()));
+        if (options.getPool() != null)
+            walkSettings = walkSettings
+                    .withSplitThreshold(options.getSplitThreshold());
+        settings = walkSettings;
+
+        keys = options.getKeyFields() == null ? null
+                : ArrayKeys.compile(options.getKeyFields());
+    }
+
+    /**
+     * Create an engine with the default options
+     *
+     * @return a new engine
+     */
+    public static DiffEngine newEngine() {
+        return new DiffEngine(DiffOptions.defaults());
+    }
+
+    /**
+     * Create an engine with the given options
+     *
+     * @param options the options
+     * @return a new engine
+     */
+    public static DiffEngine of(final DiffOptions options) {
+        BUNDLE.checkNotNull(options, "common.nullArgument");
+        return new DiffEngine(options);
+    }
+
+    /**
+     * Return the options of this engine
+     *
+     * @return the options
+     */
+    public DiffOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @return the patch as a {@link JsonPatch}
+     * @throws IllegalArgumentException arrays are keyed, and source or target
+     * is not an object
+     */
+    public JsonPatch diff(final JsonNode source, final JsonNode target) {
+        final PatchBuilder builder = new PatchBuilder();
+
+        diff(source, target, builder);
+
+        return builder.getPatch();
+    }
+
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node, pushing its operations to a sink as they are found
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @param sink the sink to push operations to
+     * @throws IllegalArgumentException arrays are keyed, and source or target
+     * is not an object
+     * @see JsonDiff#diff(JsonNode, JsonNode, DiffSink)
+     */
+    public void diff(final JsonNode source, final JsonNode target,
+                     final DiffSink sink) {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
+        BUNDLE.checkNotNull(sink, "common.nullArgument");
+
+        if (keys != null) {
+            JsonDiff.generateKeyedDiffs(source, target, keys,
+                    settings.getIgnored(), sink);
+            return;
+        }
+
+        final ForkJoinPool pool = options.getPool();
+
+        if (pool != null) {
+            ParallelDiff.diff(pool, source, target, sink, settings);
+            return;
+        }
+
+        /*
+         * A sink may itself use this engine, from the same thread
+         */
+        final DiffWalker.Scratch scratch = scratches.get().claim();
+
+        try {
+            JsonDiff.generateDiffs(source, target, settings, sink, scratch);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /**
+     * Tell whether the patch transforming the source node into the target node
+     * has any operations, without generating it
+     *
+     * <p>Unless paths are ignored or arrays are keyed, this only compares the
+     * nodes, and stops at the first difference. With ignored paths, the
+     * documents are walked until the first change outside of them; with keyed
+     * arrays, the keyed diff is run to completion.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @return true if the patch has operations
+     * @throws IllegalArgumentException arrays are keyed, and source or target
+     * is not an object
+     * @see JsonDiff#hasChanges(JsonNode, JsonNode)
+     */
+    public boolean hasChanges(final JsonNode source, final JsonNode target) {
+        if (keys == null && settings.getIgnored() == null)
+            return JsonDiff.hasChanges(source, target);
+
+        return changedPaths(source, target).hasNext();
+    }
+
+    /**
+     * Return the paths changed by the patch transforming the source node into
+     * the target node, without generating it
+     *
+     * <p>Paths are returned lazily, and in the calling thread even if diffs
+     * otherwise run in a pool; see {@link JsonDiff#changedPaths(JsonNode,
+     * JsonNode)}. For keyed arrays, the keyed diff is run to completion
+     * first, and the paths of its operations are returned.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @return an iterator over the changed paths
+     * @throws IllegalArgumentException arrays are keyed, and source or target
+     * is not an object
+     */
+    public Iterator<JsonPointerCustom> changedPaths(final JsonNode source,
+                                                    final JsonNode target) {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
+
+        if (keys == null)
+            return new ChangedPaths(source, target,
+                    settings.withSplitThreshold(Integer.MAX_VALUE));
+
+        final List<JsonPointerCustom> ret = new ArrayList<JsonPointerCustom>();
+
+        JsonDiff.generateKeyedDiffs(source, target, keys,
+                settings.getIgnored(), new DiffSink() {
+                    @Override
+                    public void operation(final JsonPatchOperation operation) {
+                        ret.add(operation.getPath());
+                    }
+                });
+
+        return Collections.unmodifiableList(ret).iterator();
+    }
+
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @return the patch as a {@link JsonNode}
+     * @throws IllegalArgumentException arrays are keyed, and source or target
+     * is not an object
+     */
+    public JsonNode asJson(final JsonNode source, final JsonNode target) {
+        return MAPPER.valueToTree(diff(source, target));
+    }
+}
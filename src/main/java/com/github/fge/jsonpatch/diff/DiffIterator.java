@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonpatch.JsonPatchOperation;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/*
+ * Lazy iterator over the operations of a diff: the walk is only advanced as
+ * far as needed to produce the next operation.
+ */
+final class DiffIterator implements Iterator<JsonPatchOperation>, DiffSink {
+    private final Queue<JsonPatchOperation> ready
+            = new ArrayDeque<JsonPatchOperation>();
+
+    private final DiffProcessor processor;
+
+    private final DiffWalker walker;
+
+    DiffIterator(final SubtreeHashes hashes, final JsonNode source,
+                 final JsonNode target) {
+        processor = DiffProcessor.of(hashes, source, target,
+                WalkSettings.SEQUENTIAL, this);
+        walker = new DiffWalker(processor, hashes, source, target);
+    }
+
+    @Override
+    public void operation(final JsonPatchOperation operation) {
+        ready.add(operation);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (ready.isEmpty())
+            if (!walker.step()) {
+                processor.finish();
+                return !ready.isEmpty();
+            }
+        return true;
+    }
+
+    @Override
+    public JsonPatchOperation next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return ready.remove();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+
+/*
+ * Receiver of the differences found by a DiffWalker
+ */
+interface DiffListener {
+    void valueReplaced(JsonPointerCustom pointer, JsonNode oldValue,
+                       JsonNode newValue);
+
+    void valueRemoved(JsonPointerCustom pointer, JsonNode value);
+
+    void valueAdded(JsonPointerCustom pointer, JsonNode value);
+
+    /*
+     * Removal of an array element which other elements are shifted into; the
+     * pointer is only valid at this point of the patch, so the value cannot be
+     * moved elsewhere later on.
+     */
+    void elementRemoved(JsonPointerCustom pointer, JsonNode value);
+}
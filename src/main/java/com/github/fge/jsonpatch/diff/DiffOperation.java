@@ -69,12 +69,14 @@ final class DiffOperation {
 
     static DiffOperation remove(final JsonPointerCustom from,
                                 final JsonNode oldValue) {
-        return new DiffOperation(Type.REMOVE, from, oldValue, null, null);
+        return new DiffOperation(Type.REMOVE, from, oldValue, from, null,
+                oldValue);
     }
 
     static DiffOperation replace(final JsonPointerCustom from,
                                  final JsonNode oldValue, final JsonNode value) {
-        return new DiffOperation(Type.REPLACE, from, oldValue, null, value);
+        return new DiffOperation(Type.REPLACE, from, oldValue, from, value,
+                oldValue);
     }
 
     /**************************** New Methods **********************/
@@ -147,6 +149,10 @@ final class DiffOperation {
         return value;
     }
 
+    JsonNode getOriginalValue() {
+        return originalValue;
+    }
+
     JsonPatchOperation asJsonPatchOperation() {
         return type.toOperation(this);
     }
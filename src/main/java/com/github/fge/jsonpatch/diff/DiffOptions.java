@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jsonpatch.JsonPatchMessages;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Options of a {@link DiffEngine}
+ *
+ * <p>Options are created with a {@link Builder}. The defaults are those of
+ * {@link JsonDiff#asJsonPatch(JsonNode, JsonNode)}: moves and copies are
+ * detected, arrays are diffed index by index, no path is ignored, and diffs
+ * run in the calling thread.</p>
+ *
+ * <p>Setting key fields switches to the keyed array diff of {@link
+ * JsonDiff#asJsonPatch(JsonNode, JsonNode, Map)}, which only accepts objects.
+ * That diff has its own way of matching array elements, never generates moves
+ * or copies and always runs in the calling thread: of the other options, only
+ * ignored paths apply to it.</p>
+ *
+ * @since 1.14
+ */
+@Immutable
+@ParametersAreNonnullByDefault
+public final class DiffOptions {
+    private static final MessageBundle BUNDLE
+            = MessageBundles.getBundle(JsonPatchMessages.class);
+
+    private static final DiffOptions DEFAULTS = newBuilder().build();
+
+    private final boolean moves;
+    private final boolean copies;
+    private final int maxArrayEdits;
+    @Nullable
+    private final Map<JsonPointerCustom, Set<String>> keyFields;
+    private final Set<JsonPointerCustom> ignoredPaths;
+    @Nullable
+    private final ForkJoinPool pool;
+    private final int splitThreshold;
+
+    private DiffOptions(final Builder builder) {
+        moves = builder.moves;
+        copies = builder.copies;
+        maxArrayEdits = builder.maxArrayEdits;
+        keyFields = builder.keyFields == null ? null
+                : Collections.unmodifiableMap(
+                new HashMap<JsonPointerCustom, Set<String>>(builder.keyFields));
+        ignoredPaths = Collections.unmodifiableSet(
+                new LinkedHashSet<JsonPointerCustom>(builder.ignoredPaths));
+        pool = builder.pool;
+        splitThreshold = builder.splitThreshold;
+    }
+
+    /**
+     * Return the default options
+     *
+     * @return the default options
+     */
+    public static DiffOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Create a builder, with all options set to their defaults
+     *
+     * @return a new builder
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Tell whether removals and additions of the same value are turned into
+     * moves
+     *
+     * @return true if they are
+     */
+    public boolean isMoves() {
+        return moves;
+    }
+
+    /**
+     * Tell whether additions of a value found unchanged elsewhere are turned
+     * into copies
+     *
+     * @return true if they are
+     */
+    public boolean isCopies() {
+        return copies;
+    }
+
+    /**
+     * Return the maximum number of element insertions and removals for arrays
+     * to be diffed by longest common subsequence
+     *
+     * @return the maximum, or -1 if arrays are diffed index by index
+     */
+    public int getMaxArrayEdits() {
+        return maxArrayEdits;
+    }
+
+    /**
+     * Return the key fields of keyed arrays, by array pointer
+     *
+     * @return an unmodifiable map, or {@code null} if arrays are not keyed
+     */
+    @Nullable
+    public Map<JsonPointerCustom, Set<String>> getKeyFields() {
+        return keyFields;
+    }
+
+    /**
+     * Return the ignored paths
+     *
+     * @return an unmodifiable set
+     */
+    public Set<JsonPointerCustom> getIgnoredPaths() {
+        return ignoredPaths;
+    }
+
+    /**
+     * Return the pool diffs are run in
+     *
+     * @return the pool, or {@code null} if diffs run in the calling thread
+     */
+    @Nullable
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Return the number of members or elements from which containers are
+     * diffed in parallel
+     *
+     * @return the split threshold; only relevant if there is a pool
+     */
+    public int getSplitThreshold() {
+        return splitThreshold;
+    }
+
+    /**
+     * Builder for {@link DiffOptions}
+     *
+     * <p>All methods return this builder.</p>
+     */
+    @NotThreadSafe
+    public static final class Builder {
+        private boolean moves = true;
+        private boolean copies = true;
+        private int maxArrayEdits = -1;
+        @Nullable
+        private Map<JsonPointerCustom, Set<String>> keyFields;
+        private final Set<JsonPointerCustom> ignoredPaths
+                = new LinkedHashSet<JsonPointerCustom>();
+        @Nullable
+        private ForkJoinPool pool;
+        private int splitThreshold = ParallelDiff.SPLIT_THRESHOLD;
+
+        private Builder() {
+        }
+
+        /**
+         * Tell whether removals and additions of the same value are turned
+         * into moves (default: true)
+         *
+         * @param moves true to detect moves
+         * @return this
+         */
+        public Builder detectMoves(final boolean moves) {
+            this.moves = moves;
+            return this;
+        }
+
+        /**
+         * Tell whether additions of a value found unchanged elsewhere are
+         * turned into copies (default: true)
+         *
+         * <p>Finding unchanged values takes an extra traversal of both
+         * documents, which is saved if copies are not detected.</p>
+         *
+         * @param copies true to detect copies
+         * @return this
+         */
+        public Builder detectCopies(final boolean copies) {
+            this.copies = copies;
+            return this;
+        }
+
+        /**
+         * Diff arrays index by index (the default)
+         *
+         * @return this
+         */
+        public Builder arraysByIndex() {
+            maxArrayEdits = -1;
+            return this;
+        }
+
+        /**
+         * Diff arrays by longest common subsequence
+         *
+         * @param maxArrayEdits the maximum number of insertions and removals
+         * for an array to be diffed by longest common subsequence
+         * @return this
+         * @throws IllegalArgumentException maxArrayEdits is negative
+         * @see JsonDiff#asJsonPatchLcs(JsonNode, JsonNode, int)
+         */
+        public Builder arraysByLcs(final int maxArrayEdits) {
+            BUNDLE.checkArgumentPrintf(maxArrayEdits >= 0,
+                    "jsonDiff.invalidMaxEdits", maxArrayEdits);
+            this.maxArrayEdits = maxArrayEdits;
+            return this;
+        }
+
+        /**
+         * Key arrays, using the given key fields
+         *
+         * <p>The map may be empty, in which case only the default key fields
+         * apply; entries are added to those of previous calls.</p>
+         *
+         * @param map the key fields of keyed arrays, by array pointer
+         * @return this
+         * @see JsonDiff#asJsonPatch(JsonNode, JsonNode, Map)
+         */
+        public Builder keyFields(final Map<JsonPointerCustom, Set<String>> map) {
+            BUNDLE.checkNotNull(map, "common.nullArgument");
+            for (final Map.Entry<JsonPointerCustom, Set<String>> entry
+                    : map.entrySet())
+                keyFields(entry.getKey(), entry.getValue());
+            if (keyFields == null)
+                keyFields = new HashMap<JsonPointerCustom, Set<String>>();
+            return this;
+        }
+
+        /**
+         * Key arrays, using the given key fields for the given array
+         *
+         * @param array the pointer to the array
+         * @param fields the key fields of its elements
+         * @return this
+         * @see #keyFields(Map)
+         */
+        public Builder keyFields(final JsonPointerCustom array,
+                                 final Collection<String> fields) {
+            BUNDLE.checkNotNull(array, "common.nullArgument");
+            BUNDLE.checkNotNull(fields, "common.nullArgument");
+            if (keyFields == null)
+                keyFields = new HashMap<JsonPointerCustom, Set<String>>();
+            keyFields.put(array, Collections.unmodifiableSet(
+                    new HashSet<String>(fields)));
+            return this;
+        }
+
+        /**
+         * Leave a path out of the diff
+         *
+         * <p>The values at that path in the source and target are not
+         * compared. Elements added to or removed from an array diffed index
+         * by index are still reported, as is anything above the path which is
+         * replaced, removed or added as a whole.</p>
+         *
+         * @param path the path
+         * @return this
+         */
+        public Builder ignorePath(final JsonPointerCustom path) {
+            BUNDLE.checkNotNull(path, "common.nullArgument");
+            ignoredPaths.add(path);
+            return this;
+        }
+
+        /**
+         * Run diffs in a fork/join pool
+         *
+         * @param pool the pool
+         * @return this
+         * @see JsonDiff#asJsonPatchParallel(JsonNode, JsonNode, ForkJoinPool)
+         */
+        public Builder parallel(final ForkJoinPool pool) {
+            return parallel(pool, ParallelDiff.SPLIT_THRESHOLD);
+        }
+
+        /**
+         * Run diffs in a fork/join pool, with the given split threshold
+         *
+         * @param pool the pool
+         * @param splitThreshold the number of members or elements from which
+         * containers are diffed in parallel
+         * @return this
+         * @throws IllegalArgumentException splitThreshold is not strictly
+         * positive
+         */
+        public Builder parallel(final ForkJoinPool pool,
+                                final int splitThreshold) {
+            BUNDLE.checkNotNull(pool, "common.nullArgument");
+            BUNDLE.checkArgumentPrintf(splitThreshold > 0,
+                    "diffOptions.invalidSplitThreshold", splitThreshold);
+            this.pool = pool;
+            this.splitThreshold = splitThreshold;
+            return this;
+        }
+
+        /**
+         * Run diffs in the calling thread (the default)
+         *
+         * @return this
+         */
+        public Builder sequential() {
+            pool = null;
+            splitThreshold = ParallelDiff.SPLIT_THRESHOLD;
+            return this;
+        }
+
+        /**
+         * Build the options
+         *
+         * @return the options
+         */
+        public DiffOptions build() {
+            return new DiffOptions(this);
+        }
+    }
+}
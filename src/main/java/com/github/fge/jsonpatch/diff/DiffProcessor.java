@@ -22,83 +22,198 @@ package com.github.fge.jsonpatch.diff;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.github.fge.jackson.JsonNumEquals;
 import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
-import com.github.fge.jsonpatch.Iterables;
-import com.github.fge.jsonpatch.JsonPatch;
-import com.github.fge.jsonpatch.JsonPatchOperation;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+/*
+ * Operations are pushed to the sink as soon as they are final. If moves are
+ * detected, a removal carrying its old value may later be turned into a move
+ * by a matching addition; such a removal, and every operation after it, is
+ * held back in "pending" until it can no longer change, so that the sink sees
+ * operations in the same order as they were recorded.
+ *
+ * Pending removals are indexed by subtree hash, so that an addition only
+ * compares its value with candidates of the same hash; the candidate found is
+ * the first equivalent one in recording order. Additions which are not moves
+ * look for a copy source in the unchanged values, which are only computed at
+ * that point.
+ */
 // TODO: cleanup
-final class DiffProcessor {
+final class DiffProcessor implements DiffListener {
     private static final JsonNumEquals EQUIVALENCE
             = JsonNumEquals.getInstance();
 
-    private final Map<JsonPointerCustom, JsonNode> unchanged;
+    private final SubtreeHashes hashes;
+
+    private final UnchangedValues unchanged;
+
+    private final Map<Integer, List<DiffOperation>> removals
+            = new HashMap<Integer, List<DiffOperation>>();
 
-    public final List<DiffOperation> diffs = new ArrayList<DiffOperation>();
+    private final boolean moves;
 
-    DiffProcessor(final Map<JsonPointerCustom, JsonNode> unchanged) {
-        this.unchanged = Collections.unmodifiableMap(new HashMap<JsonPointerCustom, JsonNode>(unchanged));
+    private final DiffSink sink;
+
+    private final Set<DiffOperation> pending
+            = new LinkedHashSet<DiffOperation>();
+
+    /*
+     * For the value locator diff, which neither removes values nor reports
+     * unchanged values that moves or copies could be made from
+     */
+    DiffProcessor(final DiffSink sink) {
+        this(UnchangedValues.none(), SubtreeHashes.none(), false, sink);
     }
 
-    void valueReplaced(final JsonPointerCustom pointer, final JsonNode oldValue,
-                       final JsonNode newValue) {
-        diffs.add(DiffOperation.replace(pointer, oldValue, newValue));
+    DiffProcessor(final UnchangedValues unchanged, final SubtreeHashes hashes,
+                  final boolean moves, final DiffSink sink) {
+        this.unchanged = unchanged;
+        this.hashes = hashes;
+        this.moves = moves;
+        this.sink = sink;
     }
 
-    void valueRemoved(final JsonPointerCustom pointer, final JsonNode value) {
-        diffs.add(DiffOperation.remove(pointer, value));
+    /**
+     * Create a processor for the generic diff of two values
+     *
+     * @param hashes the subtree hashes of both values
+     * @param source the source value
+     * @param target the target value
+     * @param settings the walk settings, telling whether moves and copies are
+     * detected
+     * @param sink the sink to push operations to
+     * @return a new processor
+     */
+    static DiffProcessor of(final SubtreeHashes hashes, final JsonNode source,
+                            final JsonNode target, final WalkSettings settings,
+                            final DiffSink sink) {
+        return new DiffProcessor(settings.isCopies()
+                ? new UnchangedValues(hashes, source, target, settings)
+                : UnchangedValues.none(), hashes, settings.isMoves(), sink);
     }
 
-    void valueAdded(final JsonPointerCustom pointer, final JsonNode value) {
-        final int removalIndex = findPreviouslyRemoved(value);
-        if (removalIndex != -1) {
-            final DiffOperation removed = diffs.get(removalIndex);
-            diffs.remove(removalIndex);
-            diffs.add(DiffOperation.move(removed.getFrom(),
+    @Override
+    public void valueReplaced(final JsonPointerCustom pointer,
+                              final JsonNode oldValue, final JsonNode newValue) {
+        record(DiffOperation.replace(pointer, oldValue, newValue));
+    }
+
+    @Override
+    public void valueRemoved(final JsonPointerCustom pointer,
+                             final JsonNode value) {
+        final DiffOperation op = DiffOperation.remove(pointer, value);
+        if (moves)
+            bucket(removals, hashes.hash(value)).add(op);
+        record(op);
+    }
+
+    @Override
+    public void elementRemoved(final JsonPointerCustom pointer,
+                               final JsonNode value) {
+        record(DiffOperation.remove2(pointer, null, value));
+    }
+
+    @Override
+    public void valueAdded(final JsonPointerCustom pointer,
+                           final JsonNode value) {
+        final DiffOperation removed = findPreviouslyRemoved(value);
+        if (removed != null) {
+            pending.remove(removed);
+            record(DiffOperation.move(removed.getFrom(),
                     value, pointer, value));
             return;
         }
-        final JsonPointerCustom ptr = findUnchangedValue(value);
+        final JsonPointerCustom ptr = unchanged.find(value);
         final DiffOperation op = ptr != null
                 ? DiffOperation.copy(ptr, pointer, value)
                 : DiffOperation.add(pointer, value);
 
-        diffs.add(DiffOperation.add(pointer, value));
+        record(op);
     }
 
-    JsonPatch getPatch() {
-        final List<JsonPatchOperation> list = new ArrayList<JsonPatchOperation>();
+    /**
+     * Push all operations still held back to the sink
+     *
+     * <p>Must be called once all values have been reported.</p>
+     */
+    void finish() {
+        for (final DiffOperation op : pending)
+            sink.operation(op.asJsonPatchOperation());
+        pending.clear();
+        removals.clear();
+    }
 
-        for (final DiffOperation op : diffs)
-            list.add(op.asJsonPatchOperation());
+    private void record(final DiffOperation op) {
+        pending.add(op);
+        flushFinal();
+    }
+
+    /*
+     * Push the operations preceding the first removal which may still become
+     * a move.
+     */
+    private void flushFinal() {
+        final Iterator<DiffOperation> iterator = pending.iterator();
+
+        DiffOperation op;
 
-        return new JsonPatch(list);
+        while (iterator.hasNext()) {
+            op = iterator.next();
+            if (isMoveCandidate(op))
+                return;
+            sink.operation(op.asJsonPatchOperation());
+            iterator.remove();
+        }
     }
 
-    @Nullable
-    private JsonPointerCustom findUnchangedValue(final JsonNode value) {
-        for (final Map.Entry<JsonPointerCustom, JsonNode> entry : unchanged.entrySet())
-            if (EQUIVALENCE.equivalent(value, entry.getValue()))
-                return entry.getKey();
-        return null;
+    private boolean isMoveCandidate(final DiffOperation op) {
+        return moves && op.getType() == DiffOperation.Type.REMOVE
+                && op.getOldValue() != null;
     }
 
-    private int findPreviouslyRemoved(final JsonNode value) {
+    /*
+     * A removal is a candidate only once; it is taken out of its bucket when
+     * it is turned into a move.
+     */
+    @Nullable
+    private DiffOperation findPreviouslyRemoved(final JsonNode value) {
+        if (removals.isEmpty())
+            return null;
+
+        final List<DiffOperation> candidates = removals.get(hashes.hash(value));
+
+        if (candidates == null)
+            return null;
+
+        final Iterator<DiffOperation> iterator = candidates.iterator();
+
         DiffOperation op;
 
-        for (int i = 0; i < diffs.size(); i++) {
-            op = diffs.get(i);
-            if (op.getType() == DiffOperation.Type.REMOVE
-                    && EQUIVALENCE.equivalent(value, op.getOldValue()))
-                return i;
+        while (iterator.hasNext()) {
+            op = iterator.next();
+            if (EQUIVALENCE.equivalent(value, op.getOldValue())) {
+                iterator.remove();
+                return op;
+            }
+        }
+        return null;
+    }
+
+    private static <T> List<T> bucket(final Map<Integer, List<T>> index,
+                                      final int hash) {
+        List<T> ret = index.get(hash);
+        if (ret == null) {
+            ret = new ArrayList<T>(1);
+            index.put(hash, ret);
         }
-        return -1;
+        return ret;
     }
 
 /** start code here */
@@ -109,14 +224,14 @@ final class DiffProcessor {
     void valueReplaced2(final JsonPointerCustom pointer, final JsonNode oldValue,
                         final JsonNode newValue, final JsonNode originalValue)
     {
-        diffs.add(DiffOperation.replace2(pointer,oldValue,newValue,originalValue));
+        record(DiffOperation.replace2(pointer,oldValue,newValue,originalValue));
     }
 
     /**
      * original value added into valueRemove method at last.
      */
     void valueRemoved2(final JsonPointerCustom pointer, final JsonNode oldvalue, final JsonNode originalValue) {
-        diffs.add(DiffOperation.remove2(pointer,null,originalValue));
+        record(DiffOperation.remove2(pointer,null,originalValue));
     }
 
     /**
@@ -135,7 +250,7 @@ final class DiffProcessor {
 //                ? DiffOperation.copy(ptr, pointer, value)
 //                : DiffOperation.add2(pointer, value, originalValue);
 
-        diffs.add(DiffOperation.add2(pointer, originalValue,originalValue));
+        record(DiffOperation.add2(pointer, originalValue,originalValue));
     }
 
 
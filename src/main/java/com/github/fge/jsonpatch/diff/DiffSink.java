@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.github.fge.jsonpatch.JsonPatchOperation;
+
+/**
+ * Receiver of the operations of a JSON diff, as they are generated
+ *
+ * <p>Operations are delivered in patch order: applying them in the order they
+ * are received yields the same result as applying the patch returned by the
+ * corresponding {@link JsonDiff} method. Each operation is delivered exactly
+ * once, and is never revoked.</p>
+ *
+ * <p>When the diff factors removals and additions into moves, a removal can
+ * only be delivered once it is known not to be part of a move; operations
+ * following such a removal are held back until then. Other operations are
+ * delivered as soon as they are found.</p>
+ *
+ * @see JsonDiff#diff(com.fasterxml.jackson.databind.JsonNode,
+ * com.fasterxml.jackson.databind.JsonNode, DiffSink)
+ * @since 1.14
+ */
+public interface DiffSink {
+    /**
+     * Receive the next operation of the patch
+     *
+     * @param operation the operation
+     */
+    void operation(JsonPatchOperation operation);
+}
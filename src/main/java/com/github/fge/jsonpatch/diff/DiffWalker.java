@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.NodeType;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Walker generating the diff of two JSON values into a {@link DiffListener}
+ *
+ * <p>The walk is depth first, and uses an explicit stack instead of recursion:
+ * it can either be run to completion with {@link #walk()}, or advanced one
+ * node pair at a time with {@link #step()}, which is what lazy consumers of a
+ * diff rely on. Either way, values are reported to the listener in the same
+ * order.</p>
+ *
+ * <p>A walker can also be given a split threshold: the members or elements of
+ * containers with at least that many of them to diff are then walked in
+ * parallel, by {@link ParallelDiff}, within the current fork/join pool. The
+ * differences found are reported in the same order as a sequential walk would
+ * report them, and from the thread running this walker.</p>
+ *
+ * <p>Arrays are diffed index by index, unless the walk settings enable {@link
+ * LcsArrayDiff longest common subsequence} matching.</p>
+ *
+ * <p>Frames only record the reference token of their node pair, and the path
+ * being visited is kept in a single {@link PathCursor}: pointers are only
+ * created for the values reported to the listener. The cursor, the stack and
+ * the sets used to compare member names can be {@link Scratch reused} from one
+ * walk to the next.</p>
+ *
+ * <p>Values at {@link IgnoredPaths ignored paths} are not compared: an ignored
+ * object member is neither removed, added nor diffed, and an ignored element
+ * is not diffed against the element it is paired with. Elements removed from
+ * or added to an array are always reported, since leaving them out would shift
+ * the indices of the others; neither is anything below a value reported as
+ * replaced, removed or added as a whole.</p>
+ */
+final class DiffWalker {
+    private final DiffListener listener;
+
+    private final SubtreeHashes hashes;
+
+    private final WalkSettings settings;
+
+    private final Deque<Frame> stack;
+
+    private final PathCursor cursor;
+
+    private final Set<String> firstFields;
+
+    private final Set<String> secondFields;
+
+    /*
+     * The ignored paths below the node pair being diffed
+     */
+    @Nullable
+    private IgnoredPaths ignored;
+
+    DiffWalker(final DiffListener listener, final SubtreeHashes hashes,
+               final JsonNode source, final JsonNode target) {
+        this(listener, hashes, source, target, WalkSettings.SEQUENTIAL);
+    }
+
+    DiffWalker(final DiffListener listener, final SubtreeHashes hashes,
+               final JsonNode source, final JsonNode target,
+               final WalkSettings settings) {
+        this(listener, hashes, source, target, settings, new Scratch());
+    }
+
+    DiffWalker(final DiffListener listener, final SubtreeHashes hashes,
+               final JsonNode source, final JsonNode target,
+               final WalkSettings settings, final Scratch scratch) {
+        this.listener = listener;
+        this.hashes = hashes;
+        this.settings = settings;
+        stack = scratch.stack;
+        cursor = scratch.cursor;
+        firstFields = scratch.firstFields;
+        secondFields = scratch.secondFields;
+        stack.clear();
+        cursor.truncate(0);
+        stack.push(Frame.root(settings.getIgnored(), source, target));
+    }
+
+    /*
+     * The prefix is the path of the container the frames belong to; it is
+     * copied, not modified.
+     */
+    DiffWalker(final DiffListener listener, final SubtreeHashes hashes,
+               final PathCursor prefix, final List<Frame> frames,
+               final WalkSettings settings) {
+        this.listener = listener;
+        this.hashes = hashes;
+        this.settings = settings;
+        stack = new ArrayDeque<Frame>();
+        cursor = prefix.copy();
+        firstFields = new TreeSet<String>();
+        secondFields = new TreeSet<String>();
+        for (int i = frames.size() - 1; i >= 0; i--)
+            stack.push(frames.get(i));
+    }
+
+    /**
+     * Run the walk to completion
+     */
+    void walk() {
+        while (step())
+            ; // nothing
+    }
+
+    /**
+     * Process the next node pair
+     *
+     * @return false if the walk was already complete
+     */
+    boolean step() {
+        final Frame frame = stack.poll();
+
+        if (frame == null)
+            return false;
+
+        /*
+         * Frames are visited depth first: whatever is on the cursor past the
+         * depth of the frame's container was pushed by an earlier sibling.
+         */
+        cursor.truncate(frame.depth);
+
+        switch (frame.kind) {
+            case PAIR:
+                ignored = frame.ignored;
+                if (frame.name != null) {
+                    cursor.push(frame.name);
+                    ignored = IgnoredPaths.child(ignored, frame.name);
+                } else if (frame.index >= 0) {
+                    cursor.push(frame.index);
+                    ignored = IgnoredPaths.child(ignored, frame.index);
+                }
+                if (!IgnoredPaths.isIgnored(ignored))
+                    generateDiffs(frame.source, frame.target);
+                break;
+            case ADDITIONS:
+                generateAdditions((ArrayNode) frame.target, frame.index);
+                break;
+            case SPLIT:
+                ParallelDiff.walkAll(frame.prefix, frame.children, listener,
+                        hashes, settings);
+        }
+
+        return true;
+    }
+
+    private void generateDiffs(final JsonNode source, final JsonNode target) {
+        if (hashes.equivalent(source, target))
+            return;
+
+        final NodeType firstType = NodeType.getNodeType(source);
+        final NodeType secondType = NodeType.getNodeType(target);
+
+        /*
+         * Node types differ: generate a replacement operation.
+         */
+        if (firstType != secondType) {
+            listener.valueReplaced(cursor.toPointer(), source, target);
+            return;
+        }
+
+        /*
+         * If we reach this point, it means that both nodes are the same type,
+         * but are not equivalent.
+         *
+         * If this is not a container, generate a replace operation.
+         */
+        if (!source.isContainerNode()) {
+            listener.valueReplaced(cursor.toPointer(), source, target);
+            return;
+        }
+
+        /*
+         * If we reach this point, both nodes are either objects or arrays;
+         * delegate.
+         */
+        if (firstType == NodeType.OBJECT)
+            generateObjectDiffs((ObjectNode) source, (ObjectNode) target);
+        else // array
+            generateArrayDiffs((ArrayNode) source, (ArrayNode) target);
+    }
+
+    private void generateObjectDiffs(final ObjectNode source,
+                                     final ObjectNode target) {
+        collect(source.fieldNames(), firstFields);
+        collect(target.fieldNames(), secondFields);
+
+        final Set<String> copy1 = new HashSet<String>(firstFields);
+        copy1.removeAll(secondFields);
+
+        final Set<String> copy2 = new HashSet<String>(secondFields);
+        copy2.removeAll(firstFields);
+
+        final Set<String> intersection = new HashSet<String>(firstFields);
+        intersection.retainAll(secondFields);
+
+        firstFields.clear();
+        secondFields.clear();
+
+        for (final String field : Collections.unmodifiableSet(copy1))
+            if (!IgnoredPaths.ignores(ignored, field))
+                listener.valueRemoved(cursor.pointerTo(field),
+                        source.get(field));
+
+        for (final String field : Collections.unmodifiableSet(copy2))
+            if (!IgnoredPaths.ignores(ignored, field))
+                listener.valueAdded(cursor.pointerTo(field),
+                        target.get(field));
+
+        /*
+         * Push in reverse, so that members are visited in iteration order
+         */
+        final int depth = cursor.depth();
+        final List<Frame> frames = new ArrayList<Frame>(intersection.size());
+        for (final String field : intersection)
+            frames.add(Frame.member(depth, ignored, field, source.get(field),
+                    target.get(field)));
+
+        pushAll(frames);
+    }
+
+    private static <T> void collect(Iterator<T> from, Set<T> to) {
+        if (from == null) {
+            throw new NullPointerException();
+        }
+        if (to == null) {
+            throw new NullPointerException();
+        }
+        while (from.hasNext()) {
+            to.add(from.next());
+        }
+    }
+
+    private void generateArrayDiffs(final ArrayNode source,
+                                    final ArrayNode target) {
+        if (settings.isLcsArrays()) {
+            final int[] matches = LcsArrayDiff.matches(hashes, source, target,
+                    settings.getMaxArrayEdits());
+            if (matches != null) {
+                generateLcsDiffs(source, target, matches);
+                return;
+            }
+        }
+
+        final int firstSize = source.size();
+        final int secondSize = target.size();
+        final int size = Math.min(firstSize, secondSize);
+
+        /*
+         * Source array is larger; in this case, elements are removed from the
+         * target; the index of removal is always the original arrays's length.
+         */
+        if (size < firstSize) {
+            final JsonPointerCustom removed = cursor.pointerTo(size);
+            for (int index = size; index < firstSize; index++)
+                listener.valueRemoved(removed, source.get(index));
+        }
+
+        /*
+         * Destination array is larger: the additions come after the common
+         * elements have been diffed, hence are pushed first.
+         */
+        final int depth = cursor.depth();
+
+        if (size < secondSize)
+            stack.push(Frame.additions(depth, target, size));
+
+        final List<Frame> frames = new ArrayList<Frame>(size);
+        for (int index = 0; index < size; index++)
+            frames.add(Frame.element(depth, ignored, index, source.get(index),
+                    target.get(index)));
+
+        pushAll(frames);
+    }
+
+    /*
+     * Between two matched elements, as many removed and inserted elements as
+     * possible are paired and diffed against each other; the remaining ones
+     * are removed or inserted. Operations on the array itself are reported
+     * first, with indices valid at the point they are applied, and paired
+     * elements are then diffed at their index in the target array.
+     */
+    private void generateLcsDiffs(final ArrayNode source, final ArrayNode target,
+                                  final int[] matches) {
+        final int firstSize = source.size();
+        final int secondSize = target.size();
+        final int depth = cursor.depth();
+        final List<Frame> frames = new ArrayList<Frame>();
+
+        int i = 0;
+        int j = 0;
+        int index = 0;
+        int nextI;
+        int nextJ;
+        int paired;
+
+        while (i < firstSize || j < secondSize) {
+            if (i < firstSize && matches[i] == j) {
+                i++;
+                j++;
+                index++;
+                continue;
+            }
+
+            nextI = i;
+            while (nextI < firstSize && matches[nextI] == -1)
+                nextI++;
+            nextJ = nextI < firstSize ? matches[nextI] : secondSize;
+            paired = Math.min(nextI - i, nextJ - j);
+
+            for (int n = 0; n < paired; n++) {
+                frames.add(Frame.element(depth, ignored, j + n,
+                        source.get(i + n), target.get(j + n)));
+                index++;
+            }
+
+            for (int n = i + paired; n < nextI; n++)
+                listener.elementRemoved(cursor.pointerTo(index),
+                        source.get(n));
+
+            for (int n = j + paired; n < nextJ; n++) {
+                listener.valueAdded(cursor.pointerTo(index),
+                        target.get(n));
+                index++;
+            }
+
+            i = nextI;
+            j = nextJ;
+        }
+
+        pushAll(frames);
+    }
+
+    /*
+     * Push the given node pairs so that they are visited in list order, or, if
+     * there are enough of them, a single frame walking them in parallel
+     */
+    private void pushAll(final List<Frame> frames) {
+        final int size = frames.size();
+
+        if (size >= settings.getSplitThreshold()) {
+            stack.push(Frame.split(cursor.copy(), frames));
+            return;
+        }
+
+        for (int i = size - 1; i >= 0; i--)
+            stack.push(frames.get(i));
+    }
+
+    private void generateAdditions(final ArrayNode target, final int from) {
+        final int size = target.size();
+        final JsonPointerCustom added = cursor.pointerTo("-");
+
+        for (int index = from; index < size; index++)
+            listener.valueAdded(added, target.get(index));
+    }
+
+    /*
+     * A node pair to diff, the trailing elements of a target array to add, or
+     * node pairs to walk in parallel
+     *
+     * The depth is that of the container the frame belongs to, as are the
+     * ignored paths; a node pair has the member name or element index leading
+     * to it from there, if any.
+     */
+    static final class Frame {
+        private enum Kind {
+            PAIR,
+            ADDITIONS,
+            SPLIT
+        }
+
+        private final Kind kind;
+        private final int depth;
+        private final IgnoredPaths ignored;
+        private final String name;
+        private final int index;
+        private final JsonNode source;
+        private final JsonNode target;
+        private final PathCursor prefix;
+        private final List<Frame> children;
+
+        private static Frame root(final IgnoredPaths ignored,
+                                  final JsonNode source,
+                                  final JsonNode target) {
+            return new Frame(Kind.PAIR, 0, ignored, null, -1, source, target,
+                    null, Collections.<Frame>emptyList());
+        }
+
+        private static Frame member(final int depth,
+                                    final IgnoredPaths ignored,
+                                    final String name, final JsonNode source,
+                                    final JsonNode target) {
+            return new Frame(Kind.PAIR, depth, ignored, name, -1, source,
+                    target, null, Collections.<Frame>emptyList());
+        }
+
+        private static Frame element(final int depth,
+                                     final IgnoredPaths ignored,
+                                     final int index, final JsonNode source,
+                                     final JsonNode target) {
+            return new Frame(Kind.PAIR, depth, ignored, null, index, source,
+                    target, null, Collections.<Frame>emptyList());
+        }
+
+        private static Frame additions(final int depth, final ArrayNode target,
+                                       final int from) {
+            return new Frame(Kind.ADDITIONS, depth, null, null, from, null,
+                    target, null, Collections.<Frame>emptyList());
+        }
+
+        private static Frame split(final PathCursor prefix,
+                                   final List<Frame> children) {
+            return new Frame(Kind.SPLIT, prefix.depth(), null, null, -1, null,
+                    null, prefix, children);
+        }
+
+        private Frame(final Kind kind, final int depth,
+                      final IgnoredPaths ignored, final String name,
+                      final int index, final JsonNode source,
+                      final JsonNode target, final PathCursor prefix,
+                      final List<Frame> children) {
+            this.kind = kind;
+            this.depth = depth;
+            this.ignored = ignored;
+            this.name = name;
+            this.index = index;
+            this.source = source;
+            this.target = target;
+            this.prefix = prefix;
+            this.children = children;
+        }
+    }
+
+    /**
+     * Buffers which a walk can reuse from a previous one
+     *
+     * <p>A scratch may only be used by one walk at a time; {@link #claim()}
+     * tells whether it is free.</p>
+     */
+    static final class Scratch {
+        private final Deque<Frame> stack = new ArrayDeque<Frame>();
+        private final PathCursor cursor = new PathCursor();
+        private final Set<String> firstFields = new TreeSet<String>();
+        private final Set<String> secondFields = new TreeSet<String>();
+
+        private boolean claimed;
+
+        /**
+         * Claim this scratch for a walk
+         *
+         * @return this scratch, or a new one if it is already claimed
+         */
+        Scratch claim() {
+            if (claimed)
+                return new Scratch();
+            claimed = true;
+            return this;
+        }
+
+        /**
+         * Release this scratch once a walk is over
+         */
+        void release() {
+            stack.clear();
+            claimed = false;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jackson.jsonpointer.TokenResolver;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Paths left out of a diff, as a tree of reference tokens
+ *
+ * <p>A diff follows the tree alongside the documents, one reference token at a
+ * time. Below a path with no ignored path under it, the node is {@code null}:
+ * diffs without ignored paths, and the subtrees of a document without any,
+ * have no lookups to do. The static methods of this class accept {@code null}
+ * nodes.</p>
+ *
+ * <p>Instances are not modified once compiled.</p>
+ */
+@Immutable
+final class IgnoredPaths {
+    private final Map<String, IgnoredPaths> children
+            = new HashMap<String, IgnoredPaths>();
+
+    private boolean ignored;
+
+    private IgnoredPaths() {
+    }
+
+    /**
+     * Compile a collection of paths
+     *
+     * @param paths the paths
+     * @return the root of the tree, or {@code null} if there are no paths
+     */
+    @Nullable
+    static IgnoredPaths compile(final Collection<JsonPointerCustom> paths) {
+        if (paths.isEmpty())
+            return null;
+
+        final IgnoredPaths ret = new IgnoredPaths();
+
+        IgnoredPaths node;
+        IgnoredPaths next;
+        String raw;
+
+        for (final JsonPointerCustom path : paths) {
+            node = ret;
+            for (final TokenResolver<JsonNode> resolver : path) {
+                raw = resolver.getToken().getRaw();
+                next = node.children.get(raw);
+                if (next == null) {
+                    next = new IgnoredPaths();
+                    node.children.put(raw, next);
+                }
+                node = next;
+            }
+            node.ignored = true;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Return the node for an object member
+     *
+     * @param node the node of the object (may be null)
+     * @param name the member name
+     * @return the node of the member, or {@code null} if nothing below it is
+     * ignored
+     */
+    @Nullable
+    static IgnoredPaths child(@Nullable final IgnoredPaths node,
+                              final String name) {
+        return node == null ? null : node.children.get(name);
+    }
+
+    /**
+     * Return the node for an array element
+     *
+     * @param node the node of the array (may be null)
+     * @param index the element index
+     * @return the node of the element, or {@code null} if nothing below it is
+     * ignored
+     */
+    @Nullable
+    static IgnoredPaths child(@Nullable final IgnoredPaths node,
+                              final int index) {
+        return node == null || node.children.isEmpty() ? null
+                : node.children.get(Integer.toString(index));
+    }
+
+    /**
+     * Tell whether the value at a node is ignored
+     *
+     * @param node the node (may be null)
+     * @return true if the value is ignored
+     */
+    static boolean isIgnored(@Nullable final IgnoredPaths node) {
+        return node != null && node.ignored;
+    }
+
+    /**
+     * Tell whether an object member is ignored
+     *
+     * @param node the node of the object (may be null)
+     * @param name the member name
+     * @return true if the member is ignored
+     */
+    static boolean ignores(@Nullable final IgnoredPaths node,
+                           final String name) {
+        return isIgnored(child(node, name));
+    }
+
+    /**
+     * Tell whether an array element is ignored
+     *
+     * @param node the node of the array (may be null)
+     * @param index the element index
+     * @return true if the element is ignored
+     */
+    static boolean ignores(@Nullable final IgnoredPaths node,
+                           final int index) {
+        return isIgnored(child(node, index));
+    }
+}
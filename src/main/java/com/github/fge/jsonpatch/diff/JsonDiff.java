@@ -19,33 +19,30 @@
 
 package com.github.fge.jsonpatch.diff;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.fge.jackson.JacksonUtils;
 import com.github.fge.jackson.JsonNumEquals;
 import com.github.fge.jackson.NodeType;
 import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchMessages;
+import com.github.fge.jsonpatch.JsonPatchOperation;
 import com.github.fge.msgsimple.bundle.MessageBundle;
 import com.github.fge.msgsimple.load.MessageBundles;
 
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
-import javax.json.JsonPointer;
-import javax.swing.text.html.ObjectView;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * JSON "diff" implementation
@@ -73,7 +70,6 @@ public final class JsonDiff {
     private static final MessageBundle BUNDLE
             = MessageBundles.getBundle(JsonPatchMessages.class);
     private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
-
     private static final JsonNumEquals EQUIVALENCE
             = JsonNumEquals.getInstance();
 
@@ -94,474 +90,358 @@ public final class JsonDiff {
         BUNDLE.checkNotNull(source, "common.nullArgument");
         BUNDLE.checkNotNull(target, "common.nullArgument");
 
-        final Map<JsonPointerCustom, JsonNode> unchanged
-                = getUnchangedValues(source, target);
-
-        final DiffProcessor processor = new DiffProcessor(unchanged);
+        final PatchBuilder builder = new PatchBuilder();
 
-        generateDiffs(processor, JsonPointerCustom.empty(), source, target);
+        diff(source, target, builder);
 
-        return processor.getPatch();
+        return builder.getPatch();
     }
 
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node, matching the elements of keyed arrays by identity
+     *
+     * <p>The map gives, for each keyed array, the fields identifying its
+     * elements. Arrays nested in elements of a keyed array are designated
+     * with {@code ?} as the element token, as in {@code
+     * /Entitlements/?/Attributes}. Arrays which are members of the root
+     * object, and are not in the map, are keyed on {@code Application Key},
+     * {@code Entitlement Type} and {@code Entitlement Name}.</p>
+     *
+     * <p>Operations on elements of keyed arrays use {@code ?} in their path,
+     * and carry the source element as their original value so that the
+     * element can be located when the patch is applied.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @param map the key fields of keyed arrays, by array pointer; may be null
+     * @return the patch as a {@link JsonPatch}
+     * @throws IllegalArgumentException source or target is not an object
+     */
     public static JsonPatch asJsonPatch(final JsonNode source,
                                         final JsonNode target, final Map<JsonPointerCustom, Set<String>> map) {
         BUNDLE.checkNotNull(source, "common.nullArgument");
         BUNDLE.checkNotNull(target, "common.nullArgument");
 
-        final Map<JsonPointerCustom, JsonNode> unchanged = computeNonChanged(source, target);
+        final PatchBuilder builder = new PatchBuilder();
 
-        DiffProcessor diffProcessor = new DiffProcessor(unchanged);
+        diff(source, target, map, builder);
 
-        generateDiffs2(diffProcessor, JsonPointerCustom.empty(), source, target);
-
-        return diffProcessor.getPatch();
+        return builder.getPatch();
     }
 
-    private static void generateDiffs2(DiffProcessor diffProcessor, JsonPointerCustom pointer, JsonNode source, JsonNode target) {
-        //converting source and target into map
-        Map<String, Object> source1 = new ObjectMapper().convertValue(source, new TypeReference<Map<String, Object>>() {
-        });
-        Map<String, Object> target1 = new ObjectMapper().convertValue(target, new TypeReference<Map<String, Object>>() {
-        });
-
-        boolean foundObj = false;
-
-        //loop for source to get each and every element
-        for (Map.Entry<String, Object> ele1 : source1.entrySet()) {
-
-            foundObj = false;
-
-            //loop for target to get each and every element
-            for (Map.Entry<String, Object> ele2 : target1.entrySet()) {
-
-                //check source first node is what? object or array
-                if (NodeType.getNodeType(new ObjectMapper().valueToTree(ele1)) == NodeType.OBJECT && NodeType.getNodeType(new ObjectMapper().valueToTree(ele1.getValue())) == NodeType.ARRAY) {
-                    //check target first node is what? object or array
-                    if (NodeType.getNodeType(new ObjectMapper().valueToTree(ele2)) == NodeType.OBJECT &&
-                            NodeType.getNodeType(new ObjectMapper().valueToTree(ele2.getValue())) == NodeType.ARRAY) {
-
-                        //check ele1 keys and ele2 keys by equals method
-                        if (ele1.getKey().equals(ele2.getKey())) {
-                            foundObj = true;
-                            //check ele1 value and ele2 value by equals method
-                            if (ele1.getValue().equals(ele2.getValue())) {
-                                break;
-                            } else {
-                                //TODO change key
-                                ArrayNode node1 = (ArrayNode) source.get(ele1.getKey());
-                                //TODO change key
-                                ArrayNode node2 = (ArrayNode) target.get(ele2.getKey());
-
-                                /** operation start from here */
-                                //check add op
-                                boolean found;
-                                for (int i = 0; i < node1.size(); i++) {
-                                    //check if
-                                    found = false;
-                                    for (int j = 0; j < node2.size(); j++) {
-                                        JsonNode one = node1.get(i);
-                                        JsonNode two = node2.get(j);
-                                        if (isEqual(one, two)) {
-                                            found = true;
-                                            //here we do replace operation
-                                            calculateReplace(one, two, diffProcessor, pointer.append(JsonPointerCustom.of(ele1.getKey())));
-                                            break;
-                                        }
-                                    }
-                                    if (!found) {
-                                        // if not found do remove operation and add "?" in pointer
-                                        diffProcessor.valueRemoved2(pointer.append(JsonPointerCustom.of(ele1.getKey()).append("?")),
-                                                new ObjectMapper().convertValue(node1.get(i), JsonNode.class),
-                                                new ObjectMapper().convertValue(node1.get(i), JsonNode.class));
-                                    }
-                                }
-
-                                //check remove op
-                                found = false;
-                                for (int i = 0; i < node2.size(); i++) {
-                                    //check if
-                                    found = false;
-                                    for (int j = 0; j < node1.size(); j++) {
-                                        JsonNode one = node2.get(i);
-                                        JsonNode two = node1.get(j);
-                                        if (isEqual(one, two)) {
-                                            found = true;
-                                            break;
-                                        }
-                                    }
-                                    if (!found) {
-                                        // System.out.println("remove");
-                                        diffProcessor.valueAdded2(pointer.append(JsonPointerCustom.of(ele1.getKey()).append("-")), node2.get(i), node2.get(i));
-                                    }
-                                }
-
-                                //check replace op
-//                                for (int i = 0; i < node1.size(); i++) {
-//                                    //check if
-//                                    for (int j = 0; j < node2.size(); j++) {
-//                                        if (isEqual(node1.get(i), node2.get(j))) {
-//                                            JsonNode one = node1.get(i);
-//                                            JsonNode two = node1.get(j);
-//                                        }
-//                                    }
-//                                }
-//                                //here
-//                                if (!found) {
-//                                    diffProcessor.valueAdded(pointer.append("Entitlements"), new ObjectMapper().valueToTree(ele1));
-//                                }
-
-                            }
-                        }
-                    }
-                } else {
-                    //if key and values both are same then do nothing
-                    if (ele1.getKey().equals(ele2.getKey())) {
-                        foundObj = true;
-                        if (ele1.getValue().equals(ele2.getValue())) {
-                            break;
-                        } else {
-                            // System.out.println("replace");
-                            diffProcessor.valueReplaced2(JsonPointerCustom.of("/", ele1.getKey()),
-                                    new ObjectMapper().convertValue(ele2.getValue(), JsonNode.class),
-                                    new ObjectMapper().convertValue(ele2.getValue(), JsonNode.class),
-                                    new ObjectMapper().convertValue(ele1.getValue(), JsonNode.class));
-                            break;
-                        }
-                    }
-                }
-            }
-
-            if (!foundObj) {
-                // if found then simply add into diff
-                diffProcessor.valueAdded(pointer.append(JsonPointerCustom.of(ele1).append(JsonPointerCustom.of("-"))), new ObjectMapper().convertValue(ele1.getValue(), JsonNode.class));
-            }
-        }
-
-        Map<String, Object> n1 = new ObjectMapper().convertValue(source, new TypeReference<Map<String, Object>>() {
-        });
-        Map<String, Object> n2 = new ObjectMapper().convertValue(target, new TypeReference<Map<String, Object>>() {
-        });
-
-        Set s1 = n1.keySet();
-        Set s2 = n2.keySet();
-        //here we remove set from s2
-        s2.removeAll(s1);
-        Iterator<String> iterate = s2.iterator();
-        while (iterate.hasNext()) {
-            // System.out.println("remove");
-            String s = iterate.next();
-            diffProcessor.valueRemoved2(pointer.append(JsonPointerCustom.of(s)),
-                    new ObjectMapper().convertValue(n2.get(s), JsonNode.class),
-                    new ObjectMapper().convertValue(n2.get(s), JsonNode.class));
-        }
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node, using a fork/join pool
+     *
+     * <p>The members and elements of large objects and arrays are compared in
+     * parallel. The result is the same patch as {@link #asJsonPatch(JsonNode,
+     * JsonNode)} would return; this is only worth it for large documents.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @param pool the pool to run the diff in
+     * @return the patch as a {@link JsonPatch}
+     * @since 1.14
+     */
+    public static JsonPatch asJsonPatchParallel(final JsonNode source,
+                                                final JsonNode target, final ForkJoinPool pool) {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
+        BUNDLE.checkNotNull(pool, "common.nullArgument");
 
-//        public final List<DiffOperation> diffs = new ArrayList<DiffOperation>();
+        final PatchBuilder builder = new PatchBuilder();
 
-        for (DiffOperation ele : diffProcessor.diffs) {
-            // System.out.println(ele.asJsonPatchOperation());
-        }
-    }//end
+        ParallelDiff.diff(pool, source, target, builder);
 
-    private static Map<JsonPointerCustom, JsonNode> computeNonChanged(JsonNode source, JsonNode target) {
-        final Map<JsonPointerCustom, JsonNode> ret = new HashMap<>();
-        JsonPointerCustom jsonPointer = JsonPointerCustom.of("Entitlements");
-        computeNonChangedValues(ret, jsonPointer, source, target);
-        return ret;
+        return builder.getPatch();
     }
 
-    private static void computeNonChangedValues(Map<JsonPointerCustom, JsonNode> ret, JsonPointerCustom pointer, JsonNode source, JsonNode target) {
-
-        final Iterator<String> firstFields1 = source.fieldNames();
-        String name1 = firstFields1.next();
-
-        Map<String, Object> source1 = new ObjectMapper().convertValue(source, new TypeReference<Map<String, Object>>() {
-        });
-        Map<String, Object> target1 = new ObjectMapper().convertValue(target, new TypeReference<Map<String, Object>>() {
-        });
-
-
-        boolean foundObj = false;
-
-        for (Map.Entry<String, Object> ele1 : source1.entrySet()) {
-            foundObj = false;
-            for (Map.Entry<String, Object> ele2 : target1.entrySet()) {
-
-                if (NodeType.getNodeType(new ObjectMapper().valueToTree(ele1)) == NodeType.OBJECT) {
-
-                    if (NodeType.getNodeType(new ObjectMapper().valueToTree(ele2)) == NodeType.OBJECT) {
-                        if (ele1.getValue().equals(ele2.getValue())) {
-                            foundObj = true;
-                            ret.put(JsonPointerCustom.of("/", ele1.getKey()), new ObjectMapper().convertValue(ele1, JsonNode.class));
-                        }
-                    } else {
-
-                    }
-
-                } else {
-                    if (NodeType.getNodeType(new ObjectMapper().valueToTree(ele2)) == NodeType.ARRAY) {
-
-                        if (ele1.getKey() == ele2.getKey()) {
-                            if (NodeType.getNodeType(new ObjectMapper().valueToTree(ele1)) == NodeType.ARRAY) {
-
-
-                                ArrayNode node1 = (ArrayNode) source.get(ele1.getKey());
-                                ArrayNode node2 = (ArrayNode) target.get(ele2.getKey());
-
-                                if (node1.equals(node2)) {
-                                    ret.put(JsonPointerCustom.of("/", ele1.getKey()), new ObjectMapper().convertValue(ele1, JsonNode.class));
-                                }
-//
-//                                //check replace op
-//                                for (int i = 0; i < node1.size(); i++) {
-//                                    //check if
-//                                    for (int j = 0; j < node2.size(); j++) {
-//                                        if (isEqual(node1.get(i), node2.get(j))) {
-//                                            ret.put(pointer, source.get(i));
-//                                        }
-//                                    }
-//                                }
-
-
-//                                //TODO change key
-//                                ArrayNode node1 = (ArrayNode) source.get(ele1.getKey());
-//                                //TODO change key
-//                                ArrayNode node2 = (ArrayNode) target.get(ele2.getKey());
-//                                //check add op
-//                                boolean found;
-//                                for (int i = 0; i < node1.size(); i++) {
-//                                    //check if
-//                                    found = false;
-//                                    for (int j = 0; j < node2.size(); j++) {
-//                                        if (isEqual(node1.get(i), node2.get(j))) {
-//                                            found = true;
-//                                            break;
-//                                        }
-//                                    }
-//                                    if (!found) {
-//                                        System.out.println("add");
-//
-//                                    }
-//                                }
-//
-//                                //check remove op
-//                                found = false;
-//                                for (int i = 0; i < node2.size(); i++) {
-//                                    //check if
-//                                    found = false;
-//                                    for (int j = 0; j < node1.size(); j++) {
-//                                        if (isEqual(node2.get(i), node1.get(j))) {
-//                                            found = true;
-//                                            break;
-//                                        }
-//                                    }
-//                                    if (!found) {
-//                                        System.out.println("remove");
-//                                    }
-//                                }
-//
-//                                //check replace op
-//                                for (int i = 0; i < node1.size(); i++) {
-//                                    //check if
-//                                    for (int j = 0; j < node2.size(); j++) {
-//                                        if (isEqual(node1.get(i), node2.get(j))) {
-//                                        }
-//                                    }
-//                                }
-//                                //here
-//                                if (!found) {
-//                                }
-
-                            }
-                        }
-
-                    }
-                }
-            }
-            if (!foundObj) {
-            }
-        }
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node, matching array elements by longest common subsequence
+     *
+     * <p>By default, arrays are diffed index by index: inserting an element at
+     * the start of an array replaces all of its elements. Here, arrays differing
+     * by no more than {@code maxArrayEdits} element insertions and removals are
+     * diffed by longest common subsequence instead, so that only the elements
+     * actually inserted or removed appear in the patch; other arrays are still
+     * diffed index by index.</p>
+     *
+     * <p>The time needed to diff an array grows with the size of the array
+     * times the number of edits, which is what {@code maxArrayEdits} bounds.
+     * Values removed from such an array are never turned into moves, and values
+     * inside it are never used as copy sources.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @param maxArrayEdits the maximum number of insertions and removals for an
+     * array to be diffed by longest common subsequence
+     * @return the patch as a {@link JsonPatch}
+     * @throws IllegalArgumentException maxArrayEdits is negative
+     * @since 1.14
+     */
+    public static JsonPatch asJsonPatchLcs(final JsonNode source,
+                                           final JsonNode target, final int maxArrayEdits) {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
+        BUNDLE.checkArgumentPrintf(maxArrayEdits >= 0,
+                "jsonDiff.invalidMaxEdits", maxArrayEdits);
 
+        final PatchBuilder builder = new PatchBuilder();
 
+        generateDiffs(source, target,
+                WalkSettings.SEQUENTIAL.withMaxArrayEdits(maxArrayEdits), builder);
+
+        return builder.getPatch();
     }
 
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node, pushing its operations to a sink as they are found
+     *
+     * <p>The sink receives the operations of the patch {@link
+     * #asJsonPatch(JsonNode, JsonNode)} would return, in the same order,
+     * without the patch ever being collected.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @param sink the sink to push operations to
+     * @since 1.14
+     */
+    public static void diff(final JsonNode source, final JsonNode target,
+                            final DiffSink sink) {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
+        BUNDLE.checkNotNull(sink, "common.nullArgument");
 
-    private static void calculateReplace(JsonNode one, JsonNode two, DiffProcessor diffProcessor, JsonPointerCustom pointer) {
-        Map<String, Object> map1 = new ObjectMapper().convertValue(one, new TypeReference<Map<String, Object>>() {
-        });
-        Map<String, Object> map2 = new ObjectMapper().convertValue(two, new TypeReference<Map<String, Object>>() {
-        });
-
-        for (Map.Entry<String, Object> entry : map1.entrySet()) {
-            String currentKey = entry.getKey();
-            if (!map1.get(currentKey).equals(map2.get(currentKey))) {
-                // System.out.println("replace");
-                diffProcessor.valueReplaced2(pointer.append("?").append(currentKey),
-                        new ObjectMapper().convertValue(map1.get(currentKey), JsonNode.class),
-                        new ObjectMapper().convertValue(map2.get(currentKey), JsonNode.class),
-                        new ObjectMapper().convertValue(new ObjectMapper().convertValue(map1, JsonNode.class), JsonNode.class));
-            }
-        }
+        generateDiffs(source, target, WalkSettings.SEQUENTIAL, sink);
     }
 
-    private static boolean isEqual(JsonNode jsonNode, JsonNode jsonNode1) {
-        if (jsonNode.get("Application Key").equals(jsonNode1.get("Application Key")) &&
-                jsonNode.get("Entitlement Type").equals(jsonNode1.get("Entitlement Type")) &&
-                jsonNode.get("Entitlement Name").equals(jsonNode1.get("Entitlement Name"))) {
-            return true;
-        }
-        return false;
+    static void generateDiffs(final JsonNode source, final JsonNode target,
+                              final WalkSettings settings, final DiffSink sink) {
+        generateDiffs(source, target, settings, sink,
+                new DiffWalker.Scratch());
     }
 
-    public static JsonPatch asJsonPatchWith(final JsonNode source,
-                                            final JsonNode target) {
-        BUNDLE.checkNotNull(source, "common.nullArgument");
-        BUNDLE.checkNotNull(target, "common.nullArgument");
-        final Map<JsonPointerCustom, JsonNode> unchanged
-                = getUnchangedValues(source, target);
-        final DiffProcessor processor = new DiffProcessor(unchanged);
+    static void generateDiffs(final JsonNode source, final JsonNode target,
+                              final WalkSettings settings, final DiffSink sink,
+                              final DiffWalker.Scratch scratch) {
+        final SubtreeHashes hashes = SubtreeHashes.of(source, target);
+        final DiffProcessor processor = DiffProcessor.of(hashes, source, target,
+                settings, sink);
 
-        generateDiffs(processor, JsonPointerCustom.empty(), source, target);
-        return processor.getPatch();
+        new DiffWalker(processor, hashes, source, target, settings, scratch)
+                .walk();
+        processor.finish();
     }
 
     /**
      * Generate a JSON patch for transforming the source node into the target
-     * node
+     * node, matching the elements of keyed arrays by identity, and pushing its
+     * operations to a sink as they are found
+     *
+     * <p>The sink receives the operations of the patch {@link
+     * #asJsonPatch(JsonNode, JsonNode, Map)} would return, in the same order.
+     * </p>
      *
      * @param source the node to be patched
      * @param target the expected result after applying the patch
-     * @return the patch as a {@link JsonNode}
+     * @param map the key fields of keyed arrays, by array pointer; may be null
+     * @param sink the sink to push operations to
+     * @throws IllegalArgumentException source or target is not an object
+     * @since 1.14
      */
-    public static JsonNode asJson(final JsonNode source, final JsonNode target, final Map<JsonPointerCustom, Set<String>> map) {
-        final String s;
-        try {
-            s = MAPPER.writeValueAsString(asJsonPatch(source, target, map));
-            return MAPPER.readTree(s);
-        } catch (IOException e) {
-            throw new RuntimeException("cannot generate JSON diff", e);
-        }
-    }
-
-    private static void generateDiffs(final DiffProcessor processor,
-                                      final JsonPointerCustom pointer, final JsonNode source, final JsonNode target) {
-        if (EQUIVALENCE.equivalent(source, target))
-            return;
-
-        final NodeType firstType = NodeType.getNodeType(source);
-        final NodeType secondType = NodeType.getNodeType(target);
-
-        /*
-         * Node types differ: generate a replacement operation.
-         */
-        if (firstType != secondType) {
-            processor.valueReplaced(pointer, source, target);
-            return;
-        }
-
-        /*
-         * If we reach this point, it means that both nodes are the same type,
-         * but are not equivalent.
-         *
-         * If this is not a container, generate a replace operation.
-         */
-        if (!source.isContainerNode()) {
-            processor.valueReplaced(pointer, source, target);
-            return;
-        }
+    public static void diff(final JsonNode source, final JsonNode target,
+                            @Nullable final Map<JsonPointerCustom, Set<String>> map,
+                            final DiffSink sink) {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
+        BUNDLE.checkNotNull(sink, "common.nullArgument");
 
-        /*
-         * If we reach this point, both nodes are either objects or arrays;
-         * delegate.
-         */
-        if (firstType == NodeType.OBJECT)
-            generateObjectDiffs(processor, pointer, (ObjectNode) source,
-                    (ObjectNode) target);
-        else // array
-            generateArrayDiffs(processor, pointer, (ArrayNode) source,
-                    (ArrayNode) target);
+        generateKeyedDiffs(source, target, ArrayKeys.compile(map), sink);
     }
 
-    private static void generateObjectDiffs(final DiffProcessor processor,
-                                            final JsonPointerCustom pointer, final ObjectNode source,
-                                            final ObjectNode target) {
-        final Set<String> firstFields
-                = collect(source.fieldNames(), new TreeSet<String>());
-
-        final Set<String> secondFields
-                = collect(target.fieldNames(), new TreeSet<String>());
+    static void generateKeyedDiffs(final JsonNode source, final JsonNode target,
+                                   final ArrayKeys keys, final DiffSink sink) {
+        generateKeyedDiffs(source, target, keys, null, sink);
+    }
 
-        final Set<String> copy1 = new HashSet<String>(firstFields);
-        copy1.removeAll(secondFields);
+    static void generateKeyedDiffs(final JsonNode source, final JsonNode target,
+                                   final ArrayKeys keys,
+                                   @Nullable final IgnoredPaths ignored,
+                                   final DiffSink sink) {
+        final DiffProcessor processor = new DiffProcessor(sink);
 
-        for (final String field : Collections.unmodifiableSet(copy1))
-            processor.valueRemoved(pointer.append(field), source.get(field));
+        ValueLocatorDiff.generateDiffs(processor, keys, ignored, source,
+                target);
+        processor.finish();
+    }
 
-        final Set<String> copy2 = new HashSet<String>(secondFields);
-        copy2.removeAll(firstFields);
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node, as a lazy iterator over its operations
+     *
+     * <p>The iterator returns the operations of the patch {@link
+     * #asJsonPatch(JsonNode, JsonNode)} would return, in the same order; the
+     * diff only progresses as far as needed to produce the next operation.
+     * Neither node may be modified while the iterator is in use. The iterator
+     * does not support removal.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @return an iterator over the operations of the patch
+     * @since 1.14
+     */
+    public static Iterator<JsonPatchOperation> operations(
+            final JsonNode source, final JsonNode target) {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
 
+        final SubtreeHashes hashes = SubtreeHashes.of(source, target);
 
-        for (final String field : Collections.unmodifiableSet(copy2))
-            processor.valueAdded(pointer.append(field), target.get(field));
+        return new DiffIterator(hashes, source, target);
+    }
 
-        final Set<String> intersection = new HashSet<String>(firstFields);
-        intersection.retainAll(secondFields);
+    /**
+     * Tell whether the patch transforming the source node into the target node
+     * has any operations, without generating it
+     *
+     * <p>This is the case unless both nodes are equivalent; the comparison
+     * stops at the first difference.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @return true if the nodes differ
+     * @since 1.14
+     */
+    public static boolean hasChanges(final JsonNode source,
+                                     final JsonNode target) {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
 
-        for (final String field : intersection)
-            generateDiffs(processor, pointer.append(field), source.get(field),
-                    target.get(field));
+        return !EQUIVALENCE.equivalent(source, target);
     }
 
-    private static <T> Set<T> collect(Iterator<T> from, Set<T> to) {
-        if (from == null) {
-            throw new NullPointerException();
-        }
-        if (to == null) {
-            throw new NullPointerException();
-        }
-        while (from.hasNext()) {
-            to.add(from.next());
-        }
-        return Collections.unmodifiableSet(to);
-    }
+    /**
+     * Return the paths changed by the patch transforming the source node into
+     * the target node, without generating it
+     *
+     * <p>Paths are those of the operations of the patch {@link
+     * #asJsonPatch(JsonNode, JsonNode)} would return, in the same order, before
+     * removals and additions are factored into moves and copies; no value is
+     * copied. Consecutive identical paths are only
+     * returned once: for instance, when several trailing elements of an array
+     * are removed, only the index of the first of them is returned.</p>
+     *
+     * <p>The diff only progresses as far as needed to produce the next path.
+     * Neither node may be modified while the iterator is in use. The iterator
+     * does not support removal.</p>
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @return an iterator over the changed paths
+     * @since 1.14
+     */
+    public static Iterator<JsonPointerCustom> changedPaths(
+            final JsonNode source, final JsonNode target) {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
 
+        return new ChangedPaths(source, target, WalkSettings.SEQUENTIAL);
+    }
 
-    private static void generateArrayDiffs(final DiffProcessor processor,
-                                           final JsonPointerCustom pointer, final ArrayNode source,
-                                           final ArrayNode target) {
-        final int firstSize = source.size();
-        final int secondSize = target.size();
-        final int size = Math.min(firstSize, secondSize);
+    /**
+     * Generate a JSON patch for transforming the source value into the target
+     * value, reading both from token streams and writing the patch as it is
+     * computed
+     *
+     * <p>Only the values which differ are materialized, so that documents
+     * larger than the available memory can be diffed as long as their changes
+     * are not. The patch is written as a JSON array of operations; see {@link
+     * StreamingDiff} for how it differs from the one generated by {@link
+     * #asJsonPatch(JsonNode, JsonNode)}.</p>
+     *
+     * <p>Neither parser is closed; the generator is flushed, but not closed.
+     * </p>
+     *
+     * @param source the parser for the value to be patched
+     * @param target the parser for the expected result of the patch
+     * @param out the generator to write the patch to
+     * @throws IOException failure to read either input, or to write the patch
+     * @since 1.14
+     */
+    public static void diff(final JsonParser source, final JsonParser target,
+                            final JsonGenerator out)
+            throws IOException {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
+        BUNDLE.checkNotNull(out, "common.nullArgument");
 
-        /*
-         * Source array is larger; in this case, elements are removed from the
-         * target; the index of removal is always the original arrays's length.
-         */
-        for (int index = size; index < firstSize; index++)
-            processor.valueRemoved(pointer.append(size), source.get(index));
+        out.writeStartArray();
+        new StreamingDiff(source, target, out).diff(JsonPointerCustom.empty());
+        out.writeEndArray();
+        out.flush();
+    }
 
-        for (int index = 0; index < size; index++)
-            generateDiffs(processor, pointer.append(index), source.get(index),
-                    target.get(index));
+    public static JsonPatch asJsonPatchWith(final JsonNode source,
+                                            final JsonNode target) {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
+        final PatchBuilder builder = new PatchBuilder();
 
-        // Deal with the destination array being larger...
-        for (int index = size; index < secondSize; index++)
-            processor.valueAdded(pointer.append("-"), target.get(index));
+        diff(source, target, builder);
+        return builder.getPatch();
     }
 
+    /**
+     * Generate a JSON patch for transforming the source node into the target
+     * node
+     *
+     * @param source the node to be patched
+     * @param target the expected result after applying the patch
+     * @return the patch as a {@link JsonNode}
+     */
+    public static JsonNode asJson(final JsonNode source, final JsonNode target, final Map<JsonPointerCustom, Set<String>> map) {
+        final String s;
+        try {
+            s = MAPPER.writeValueAsString(asJsonPatch(source, target, map));
+            return MAPPER.readTree(s);
+        } catch (IOException e) {
+            throw new RuntimeException("cannot generate JSON diff", e);
+        }
+    }
 
     static Map<JsonPointerCustom, JsonNode> getUnchangedValues(final JsonNode source,
                                                                final JsonNode target) {
+        return getUnchangedValues(SubtreeHashes.of(source, target), source,
+                target, WalkSettings.SEQUENTIAL);
+    }
+
+    /*
+     * Members and elements of containers with at least the split threshold of them
+     * to compare are compared in parallel, in the current fork/join pool; the
+     * map is filled in the same order either way.
+     */
+    static Map<JsonPointerCustom, JsonNode> getUnchangedValues(final SubtreeHashes hashes,
+                                                               final JsonNode source, final JsonNode target,
+                                                               final WalkSettings settings) {
         final Map<JsonPointerCustom, JsonNode> ret = new HashMap<JsonPointerCustom, JsonNode>();
-        computeUnchanged(ret, JsonPointerCustom.empty(), source, target);
+        computeUnchanged(ret, hashes, new PathCursor(), source, target,
+                settings);
         return ret;
     }
 
-    private static void computeUnchanged(final Map<JsonPointerCustom, JsonNode> ret,
-                                         final JsonPointerCustom pointer, final JsonNode first, final JsonNode second) {
+    /*
+     * The cursor is at the path of both values, and is left there; a pointer is
+     * only created for the entries put in the map.
+     */
+    static void computeUnchanged(final Map<JsonPointerCustom, JsonNode> ret,
+                                 final SubtreeHashes hashes, final PathCursor cursor, final JsonNode first, final JsonNode second,
+                                 final WalkSettings settings) {
         //if first and second are equal
-        if (EQUIVALENCE.equivalent(first, second)) {
-            ret.put(pointer, second);
+        if (hashes.equivalent(first, second)) {
+            ret.put(cursor.toPointer(), second);
             return;
         }
 
@@ -574,10 +454,17 @@ public final class JsonDiff {
         // We know they are both the same type, so...
         switch (firstType) {
             case OBJECT:
-                computeObject(ret, pointer, first, second);
+                computeObject(ret, hashes, cursor, first, second,
+                        settings);
                 break;
             case ARRAY:
-                computeArray(ret, pointer, first, second);
+                /*
+                 * Elements of arrays diffed by longest common subsequence may
+                 * be shifted by the time they would be copied.
+                 */
+                if (!settings.isLcsArrays())
+                    computeArray(ret, hashes, cursor, first, second,
+                            settings);
                 break;
             default:
                 /* nothing */
@@ -585,9 +472,12 @@ public final class JsonDiff {
     }
 
     private static void computeObject(final Map<JsonPointerCustom, JsonNode> ret,
-                                      final JsonPointerCustom pointer, final JsonNode source,
-                                      final JsonNode target) {
+                                      final SubtreeHashes hashes, final PathCursor cursor, final JsonNode source,
+                                      final JsonNode target, final WalkSettings settings) {
         final Iterator<String> firstFields = source.fieldNames();
+        final boolean split = source.size() >= settings.getSplitThreshold();
+        final List<ParallelDiff.NodePair> pairs
+                = new ArrayList<ParallelDiff.NodePair>(split ? source.size() : 0);
 
         String name;
 
@@ -595,17 +485,44 @@ public final class JsonDiff {
             name = firstFields.next();
             if (!target.has(name))
                 continue;
-            computeUnchanged(ret, pointer.append(name), source.get(name),
-                    target.get(name));
+            if (split) {
+                pairs.add(new ParallelDiff.NodePair(name, source.get(name),
+                        target.get(name)));
+                continue;
+            }
+            cursor.push(name);
+            computeUnchanged(ret, hashes, cursor, source.get(name),
+                    target.get(name), settings);
+            cursor.pop();
         }
+
+        if (split)
+            ParallelDiff.computeAll(ret, hashes, cursor.copy(), pairs,
+                    settings);
     }
 
     private static void computeArray(final Map<JsonPointerCustom, JsonNode> ret,
-                                     final JsonPointerCustom pointer, final JsonNode source, final JsonNode target) {
+                                     final SubtreeHashes hashes, final PathCursor cursor, final JsonNode source, final JsonNode target,
+                                     final WalkSettings settings) {
         final int size = Math.min(source.size(), target.size());
 
+        if (size < settings.getSplitThreshold()) {
+            for (int i = 0; i < size; i++) {
+                cursor.push(i);
+                computeUnchanged(ret, hashes, cursor, source.get(i),
+                        target.get(i), settings);
+                cursor.pop();
+            }
+            return;
+        }
+
+        final List<ParallelDiff.NodePair> pairs
+                = new ArrayList<ParallelDiff.NodePair>(size);
+
         for (int i = 0; i < size; i++)
-            computeUnchanged(ret, pointer.append(i), source.get(i),
-                    target.get(i));
+            pairs.add(new ParallelDiff.NodePair(i, source.get(i),
+                    target.get(i)));
+
+        ParallelDiff.computeAll(ret, hashes, cursor.copy(), pairs, settings);
     }
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Extracts the {@link CompositeKey} of the elements of one keyed array
+ *
+ * <p>The key fields are copied and sorted when the extractor is built, so
+ * that the order of the set they are taken from does not matter.</p>
+ */
+@Immutable
+final class KeyExtractor {
+    private final String[] fields;
+
+    KeyExtractor(final Collection<String> fields) {
+        final TreeSet<String> sorted = new TreeSet<>(fields);
+        this.fields = sorted.toArray(new String[sorted.size()]);
+    }
+
+    CompositeKey keyOf(final JsonNode element) {
+        return CompositeKey.of(element, fields);
+    }
+}
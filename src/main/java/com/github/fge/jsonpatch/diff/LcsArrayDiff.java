@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Longest common subsequence of the elements of two arrays
+ *
+ * <p>This is Myers' O(ND) difference algorithm, in its linear space variant:
+ * the "middle snake" of the edit graph is found by searching from both ends at
+ * once, and the search then recurses on both sides of it, as in Hirschberg's
+ * algorithm. Common prefixes and suffixes are matched first.</p>
+ *
+ * <p>Elements are compared with their {@link SubtreeHashes subtree hashes}
+ * first, so that only elements with equal hashes are compared in depth.</p>
+ */
+final class LcsArrayDiff {
+    private final SubtreeHashes hashes;
+    private final JsonNode source;
+    private final JsonNode target;
+    private final int[] sourceHashes;
+    private final int[] targetHashes;
+    private final int[] matches;
+
+    private LcsArrayDiff(final SubtreeHashes hashes, final JsonNode source,
+                         final JsonNode target) {
+        this.hashes = hashes;
+        this.source = source;
+        this.target = target;
+        sourceHashes = elementHashes(hashes, source);
+        targetHashes = elementHashes(hashes, target);
+        matches = new int[source.size()];
+        Arrays.fill(matches, -1);
+    }
+
+    /**
+     * Match the elements of two arrays
+     *
+     * @param hashes the subtree hashes
+     * @param source the source array
+     * @param target the target array
+     * @param maxEdits the maximum number of insertions and removals
+     * @return for each source element, the index of the matching target
+     * element or -1, or null if the arrays differ by more than maxEdits
+     * insertions and removals
+     */
+    @Nullable
+    static int[] matches(final SubtreeHashes hashes, final JsonNode source,
+                         final JsonNode target, final int maxEdits) {
+        final LcsArrayDiff diff = new LcsArrayDiff(hashes, source, target);
+
+        int left = 0;
+        int top = 0;
+        int right = source.size();
+        int bottom = target.size();
+
+        while (left < right && top < bottom && diff.equal(left, top)) {
+            diff.matches[left] = top;
+            left++;
+            top++;
+        }
+
+        while (left < right && top < bottom
+                && diff.equal(right - 1, bottom - 1)) {
+            right--;
+            bottom--;
+            diff.matches[right] = bottom;
+        }
+
+        /*
+         * At least the difference in size has to be inserted or removed
+         */
+        if (Math.abs(right - left - (bottom - top)) > maxEdits)
+            return null;
+
+        /*
+         * The middle snake is found after ceil(D / 2) steps from either end,
+         * where D is the edit distance: this lets edit distances of maxEdits + 1
+         * through, hence the final check.
+         */
+        if (!diff.findPath(left, top, right, bottom, (maxEdits + 1) / 2))
+            return null;
+
+        return diff.editDistance() <= maxEdits ? diff.matches : null;
+    }
+
+    private int editDistance() {
+        int ret = source.size() + target.size();
+        for (final int match : matches)
+            if (match != -1)
+                ret -= 2;
+        return ret;
+    }
+
+    /*
+     * Match the elements of a box of the edit graph; returns false if the
+     * middle snake was not found within maxDepth steps from either end.
+     */
+    private boolean findPath(final int left, final int top, final int right,
+                             final int bottom, final int maxDepth) {
+        final int[] snake = middleSnake(left, top, right, bottom, maxDepth);
+
+        if (snake == null)
+            return right - left + bottom - top == 0;
+
+        /*
+         * The edit distance of the boxes on either side of the middle snake is
+         * at most that of the whole box: no limit is needed anymore.
+         */
+        findPath(left, top, snake[0], snake[1], Integer.MAX_VALUE);
+        walkSnake(snake[0], snake[1], snake[2], snake[3]);
+        findPath(snake[2], snake[3], right, bottom, Integer.MAX_VALUE);
+        return true;
+    }
+
+    /*
+     * A snake is at most one insertion or removal, with diagonals (that is,
+     * matching elements) on either side.
+     */
+    private void walkSnake(int x, int y, final int toX, final int toY) {
+        while (x < toX && y < toY && equal(x, y)) {
+            matches[x] = y;
+            x++;
+            y++;
+        }
+
+        if (toX - x > toY - y)
+            x++;
+        else if (toY - y > toX - x)
+            y++;
+
+        while (x < toX && y < toY && equal(x, y)) {
+            matches[x] = y;
+            x++;
+            y++;
+        }
+    }
+
+    /*
+     * Forward paths are tracked by their furthest x on each diagonal k, where
+     * k = x - y relative to the top left corner; backward paths by their
+     * furthest y on each diagonal c, relative to the bottom right corner.
+     * Returns { x1, y1, x2, y2 }, or null if the box is empty or the limit is
+     * reached.
+     */
+    @Nullable
+    private int[] middleSnake(final int left, final int top, final int right,
+                              final int bottom, final int maxDepth) {
+        final int width = right - left;
+        final int height = bottom - top;
+        final int size = width + height;
+
+        if (size == 0)
+            return null;
+
+        final int delta = width - height;
+        final boolean odd = (delta & 1) != 0;
+        final int max = Math.min((size + 1) / 2, maxDepth);
+        final int offset = max + 1;
+        final int[] forward = new int[2 * max + 3];
+        final int[] backward = new int[2 * max + 3];
+
+        forward[offset + 1] = left;
+        backward[offset + 1] = bottom;
+
+        int c;
+        int k;
+        int x;
+        int y;
+        int px;
+        int py;
+
+        for (int d = 0; d <= max; d++) {
+            for (k = d; k >= -d; k -= 2) {
+                c = k - delta;
+                if (k == -d || k != d
+                        && forward[offset + k - 1] < forward[offset + k + 1]) {
+                    px = forward[offset + k + 1];
+                    x = px;
+                } else {
+                    px = forward[offset + k - 1];
+                    x = px + 1;
+                }
+                y = top + x - left - k;
+                py = d == 0 || x != px ? y : y - 1;
+                while (x < right && y < bottom && equal(x, y)) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+                if (odd && c >= -(d - 1) && c <= d - 1
+                        && y >= backward[offset + c])
+                    return new int[]{ px, py, x, y };
+            }
+
+            for (c = d; c >= -d; c -= 2) {
+                k = c + delta;
+                if (c == -d || c != d
+                        && backward[offset + c - 1] > backward[offset + c + 1]) {
+                    py = backward[offset + c + 1];
+                    y = py;
+                } else {
+                    py = backward[offset + c - 1];
+                    y = py - 1;
+                }
+                x = left + y - top + k;
+                px = d == 0 || y != py ? x : x + 1;
+                while (x > left && y > top && equal(x - 1, y - 1)) {
+                    x--;
+                    y--;
+                }
+                backward[offset + c] = y;
+                if (!odd && k >= -d && k <= d && x <= forward[offset + k])
+                    return new int[]{ x, y, px, py };
+            }
+        }
+
+        return null;
+    }
+
+    private boolean equal(final int x, final int y) {
+        return sourceHashes[x] == targetHashes[y]
+                && hashes.equivalent(source.get(x), target.get(y));
+    }
+
+    private static int[] elementHashes(final SubtreeHashes hashes,
+                                       final JsonNode array) {
+        final int size = array.size();
+        final int[] ret = new int[size];
+        for (int i = 0; i < size; i++)
+            ret[i] = hashes.hash(array.get(i));
+        return ret;
+    }
+}
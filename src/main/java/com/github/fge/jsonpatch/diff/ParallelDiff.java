@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join driver for the generic diff
+ *
+ * <p>Both the unchanged values pass and the diff walk split the members or
+ * elements of large containers into ranges, which are processed in parallel.
+ * Each range collects its results on its own; results are then merged in range
+ * order, and only then handed to the {@link DiffProcessor}. The processor
+ * therefore sees exactly the same sequence of values as with a sequential
+ * diff, and the generated patch is identical.</p>
+ */
+final class ParallelDiff {
+    /*
+     * Containers with at least this many members or elements to compare are
+     * split; ranges are split until they are no larger than this.
+     */
+    static final int SPLIT_THRESHOLD = 256;
+
+    private ParallelDiff() {
+    }
+
+    /**
+     * Generate the diff of two values in the given pool
+     *
+     * <p>The sink is called from a thread of the pool, but never from two
+     * threads at once.</p>
+     *
+     * @param pool the pool
+     * @param source the source value
+     * @param target the target value
+     * @param sink the sink to push operations to
+     */
+    static void diff(final ForkJoinPool pool, final JsonNode source,
+                     final JsonNode target, final DiffSink sink) {
+        diff(pool, source, target, sink, SPLIT_THRESHOLD);
+    }
+
+    static void diff(final ForkJoinPool pool, final JsonNode source,
+                     final JsonNode target, final DiffSink sink,
+                     final int splitThreshold) {
+        diff(pool, source, target, sink,
+                WalkSettings.SEQUENTIAL.withSplitThreshold(splitThreshold));
+    }
+
+    static void diff(final ForkJoinPool pool, final JsonNode source,
+                     final JsonNode target, final DiffSink sink,
+                     final WalkSettings settings) {
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                final SubtreeHashes hashes = SubtreeHashes.of(source, target);
+                final DiffProcessor processor = DiffProcessor.of(hashes,
+                        source, target, settings, sink);
+
+                new DiffWalker(processor, hashes, source, target,
+                        settings).walk();
+                processor.finish();
+            }
+        });
+    }
+
+    /*
+     * Walk node pairs in parallel, then report their differences in order.
+     * Must be called from a fork/join pool.
+     *
+     * The prefix is the path of the container the node pairs belong to; it is
+     * shared by all tasks, and only ever copied.
+     */
+    static void walkAll(final PathCursor prefix,
+                        final List<DiffWalker.Frame> frames,
+                        final DiffListener listener, final SubtreeHashes hashes,
+                        final WalkSettings settings) {
+        for (final DiffOperation op
+                : new WalkTask(prefix, frames, hashes, settings).invoke())
+            switch (op.getType()) {
+                case REPLACE:
+                    listener.valueReplaced(op.getPath(), op.getOldValue(),
+                            op.getValue());
+                    break;
+                case REMOVE:
+                    if (op.getOldValue() != null)
+                        listener.valueRemoved(op.getPath(), op.getOldValue());
+                    else
+                        listener.elementRemoved(op.getPath(),
+                                op.getOriginalValue());
+                    break;
+                case ADD:
+                    listener.valueAdded(op.getPath(), op.getValue());
+                    break;
+                default:
+                    throw new IllegalStateException("unexpected " + op.getType());
+            }
+    }
+
+    /*
+     * Compare node pairs in parallel, then add their unchanged values to the
+     * map in order. Must be called from a fork/join pool.
+     *
+     * Entries are put one by one rather than with putAll(), which may presize
+     * the map: the map must grow, hence iterate, as it would sequentially.
+     */
+    static void computeAll(final Map<JsonPointerCustom, JsonNode> ret,
+                           final SubtreeHashes hashes, final PathCursor prefix,
+                           final List<NodePair> pairs,
+                           final WalkSettings settings) {
+        for (final Map.Entry<JsonPointerCustom, JsonNode> entry
+                : new UnchangedTask(prefix, pairs, hashes, settings).invoke()
+                .entrySet())
+            ret.put(entry.getKey(), entry.getValue());
+    }
+
+    /*
+     * A member or element of the containers at the prefix of a task
+     */
+    static final class NodePair {
+        private final String name;
+        private final int index;
+        private final JsonNode first;
+        private final JsonNode second;
+
+        NodePair(final String name, final JsonNode first,
+                 final JsonNode second) {
+            this(name, -1, first, second);
+        }
+
+        NodePair(final int index, final JsonNode first,
+                 final JsonNode second) {
+            this(null, index, first, second);
+        }
+
+        private NodePair(final String name, final int index,
+                         final JsonNode first, final JsonNode second) {
+            this.name = name;
+            this.index = index;
+            this.first = first;
+            this.second = second;
+        }
+
+        private void push(final PathCursor cursor) {
+            if (name != null)
+                cursor.push(name);
+            else
+                cursor.push(index);
+        }
+    }
+
+    private static final class WalkTask
+            extends RecursiveTask<List<DiffOperation>> {
+        private static final long serialVersionUID = 1L;
+
+        private final PathCursor prefix;
+        private final List<DiffWalker.Frame> frames;
+        private final SubtreeHashes hashes;
+        private final WalkSettings settings;
+
+        private WalkTask(final PathCursor prefix,
+                         final List<DiffWalker.Frame> frames,
+                         final SubtreeHashes hashes, final WalkSettings settings) {
+            this.prefix = prefix;
+            this.frames = frames;
+            this.hashes = hashes;
+            this.settings = settings;
+        }
+
+        @Override
+        protected List<DiffOperation> compute() {
+            final int size = frames.size();
+
+            if (size <= settings.getSplitThreshold()) {
+                final Recorder recorder = new Recorder();
+                new DiffWalker(recorder, hashes, prefix, frames, settings).walk();
+                return recorder.events;
+            }
+
+            final int middle = size / 2;
+            final WalkTask first = new WalkTask(prefix,
+                    frames.subList(0, middle), hashes, settings);
+            final WalkTask second = new WalkTask(prefix,
+                    frames.subList(middle, size), hashes, settings);
+
+            first.fork();
+            final List<DiffOperation> tail = second.compute();
+            final List<DiffOperation> ret = first.join();
+            ret.addAll(tail);
+            return ret;
+        }
+    }
+
+    private static final class UnchangedTask
+            extends RecursiveTask<Map<JsonPointerCustom, JsonNode>> {
+        private static final long serialVersionUID = 1L;
+
+        private final PathCursor prefix;
+        private final List<NodePair> pairs;
+        private final SubtreeHashes hashes;
+        private final WalkSettings settings;
+
+        private UnchangedTask(final PathCursor prefix,
+                              final List<NodePair> pairs,
+                              final SubtreeHashes hashes,
+                              final WalkSettings settings) {
+            this.prefix = prefix;
+            this.pairs = pairs;
+            this.hashes = hashes;
+            this.settings = settings;
+        }
+
+        @Override
+        protected Map<JsonPointerCustom, JsonNode> compute() {
+            final int size = pairs.size();
+
+            if (size <= settings.getSplitThreshold()) {
+                final Map<JsonPointerCustom, JsonNode> ret
+                        = new LinkedHashMap<JsonPointerCustom, JsonNode>();
+                final PathCursor cursor = prefix.copy();
+                for (final NodePair pair : pairs) {
+                    pair.push(cursor);
+                    JsonDiff.computeUnchanged(ret, hashes, cursor, pair.first,
+                            pair.second, settings);
+                    cursor.pop();
+                }
+                return ret;
+            }
+
+            final int middle = size / 2;
+            final UnchangedTask first = new UnchangedTask(prefix,
+                    pairs.subList(0, middle), hashes, settings);
+            final UnchangedTask second = new UnchangedTask(prefix,
+                    pairs.subList(middle, size), hashes, settings);
+
+            first.fork();
+            final Map<JsonPointerCustom, JsonNode> tail = second.compute();
+            final Map<JsonPointerCustom, JsonNode> ret = first.join();
+            ret.putAll(tail);
+            return ret;
+        }
+    }
+
+    /*
+     * Listener recording differences, to be reported later
+     */
+    private static final class Recorder implements DiffListener {
+        private final List<DiffOperation> events
+                = new ArrayList<DiffOperation>();
+
+        @Override
+        public void valueReplaced(final JsonPointerCustom pointer,
+                                  final JsonNode oldValue, final JsonNode newValue) {
+            events.add(DiffOperation.replace(pointer, oldValue, newValue));
+        }
+
+        @Override
+        public void valueRemoved(final JsonPointerCustom pointer,
+                                 final JsonNode value) {
+            events.add(DiffOperation.remove(pointer, value));
+        }
+
+        @Override
+        public void valueAdded(final JsonPointerCustom pointer,
+                               final JsonNode value) {
+            events.add(DiffOperation.add(pointer, value));
+        }
+
+        @Override
+        public void elementRemoved(final JsonPointerCustom pointer,
+                                   final JsonNode value) {
+            events.add(DiffOperation.remove2(pointer, null, value));
+        }
+    }
+}
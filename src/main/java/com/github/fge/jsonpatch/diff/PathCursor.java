@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.jsonpointer.JsonNodeResolver;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jackson.jsonpointer.ReferenceToken;
+import com.github.fge.jackson.jsonpointer.TokenResolver;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Mutable path to the node pair a diff walk is visiting
+ *
+ * The walk pushes a reference token when going down into a member or element,
+ * and pops it when coming back; a JsonPointerCustom is only created when a
+ * value is actually reported. Most visited pairs are unchanged, and are then
+ * never given a pointer of their own.
+ *
+ * Token resolvers are created on demand and kept for as long as their token
+ * is on the stack, so that the values reported under a given container share
+ * the resolvers of the container's path.
+ */
+@NotThreadSafe
+final class PathCursor {
+    private String[] names;
+    private int[] indices;
+    private JsonNodeResolver[] resolvers;
+    private int depth;
+
+    PathCursor() {
+        this(8);
+    }
+
+    private PathCursor(final int capacity) {
+        names = new String[capacity];
+        indices = new int[capacity];
+        resolvers = new JsonNodeResolver[capacity];
+    }
+
+    /**
+     * Return an independent copy of this cursor
+     *
+     * <p>This is used to hand the current path over to parallel tasks.</p>
+     *
+     * @return the copy
+     */
+    PathCursor copy() {
+        final PathCursor ret = new PathCursor(Math.max(depth * 2, 8));
+        System.arraycopy(names, 0, ret.names, 0, depth);
+        System.arraycopy(indices, 0, ret.indices, 0, depth);
+        System.arraycopy(resolvers, 0, ret.resolvers, 0, depth);
+        ret.depth = depth;
+        return ret;
+    }
+
+    /**
+     * Return the number of reference tokens on the stack
+     *
+     * @return the depth
+     */
+    int depth() {
+        return depth;
+    }
+
+    /**
+     * Pop reference tokens until the stack has the given depth
+     *
+     * @param depth the depth, no greater than the current one
+     */
+    void truncate(final int depth) {
+        if (depth > this.depth)
+            throw new IllegalArgumentException("cannot truncate to depth "
+                    + depth + ", depth is " + this.depth);
+        this.depth = depth;
+    }
+
+    /**
+     * Go down into an object member
+     *
+     * @param name the member name
+     */
+    void push(final String name) {
+        ensureCapacity();
+        names[depth] = name;
+        resolvers[depth++] = null;
+    }
+
+    /**
+     * Go down into an array element
+     *
+     * @param index the element index
+     */
+    void push(final int index) {
+        ensureCapacity();
+        names[depth] = null;
+        indices[depth] = index;
+        resolvers[depth++] = null;
+    }
+
+    /**
+     * Go back up one level
+     */
+    void pop() {
+        truncate(depth - 1);
+    }
+
+    /**
+     * Create a pointer to the current path
+     *
+     * @return the pointer
+     */
+    JsonPointerCustom toPointer() {
+        if (depth == 0)
+            return JsonPointerCustom.empty();
+
+        final List<TokenResolver<JsonNode>> list
+                = new ArrayList<TokenResolver<JsonNode>>(depth);
+        for (int i = 0; i < depth; i++)
+            list.add(resolver(i));
+        return new JsonPointerCustom(list);
+    }
+
+    /**
+     * Create a pointer to a member of the current path
+     *
+     * @param name the raw reference token
+     * @return the pointer
+     */
+    JsonPointerCustom pointerTo(final String name) {
+        push(name);
+        final JsonPointerCustom ret = toPointer();
+        depth--;
+        return ret;
+    }
+
+    /**
+     * Create a pointer to an element of the current path
+     *
+     * @param index the element index
+     * @return the pointer
+     */
+    JsonPointerCustom pointerTo(final int index) {
+        push(index);
+        final JsonPointerCustom ret = toPointer();
+        depth--;
+        return ret;
+    }
+
+    private JsonNodeResolver resolver(final int level) {
+        JsonNodeResolver ret = resolvers[level];
+        if (ret == null) {
+            ret = new JsonNodeResolver(ReferenceToken.fromRaw(
+                    names[level] != null ? names[level]
+                            : Integer.toString(indices[level])));
+            resolvers[level] = ret;
+        }
+        return ret;
+    }
+
+    private void ensureCapacity() {
+        if (depth < names.length)
+            return;
+        final int capacity = names.length * 2;
+        names = Arrays.copyOf(names, capacity);
+        indices = Arrays.copyOf(indices, capacity);
+        resolvers = Arrays.copyOf(resolvers, capacity);
+    }
+}
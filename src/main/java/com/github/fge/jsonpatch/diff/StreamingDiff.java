@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Diff of two JSON token streams, written as a JSON Patch as it goes
+ *
+ * <p>Both parsers are walked in lockstep. Values which are equal are read and
+ * discarded token by token; only the following values are materialized as
+ * trees:</p>
+ *
+ * <ul>
+ *     <li>values written to the patch (the value of an {@code add}, the value
+ *     and original value of a {@code replace});</li>
+ *     <li>object members whose name differs, at the same position, between
+ *     source and target; they are kept until the end of the enclosing object,
+ *     since their counterpart may appear later.</li>
+ * </ul>
+ *
+ * <p>When members appear in the same order on both sides, peak memory is
+ * therefore bounded by the largest changed value, and not by the size of the
+ * documents.</p>
+ *
+ * <p>Unlike {@link JsonDiff#asJsonPatch(JsonNode, JsonNode)}, no move or copy
+ * operations are generated, and operations are written in the order they are
+ * discovered. Values are written as JSON values; {@code replace} operations
+ * also carry the replaced value as {@code originalValue}.</p>
+ */
+@ParametersAreNonnullByDefault
+final class StreamingDiff {
+    private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+    private final JsonParser source;
+    private final JsonParser target;
+    private final JsonGenerator out;
+
+    StreamingDiff(final JsonParser source, final JsonParser target,
+                  final JsonGenerator out) {
+        this.source = source;
+        this.target = target;
+        this.out = out;
+    }
+
+    /**
+     * Diff the next value of both parsers, writing operations relative to a
+     * pointer
+     *
+     * <p>On exit, both parsers are positioned on the last token of the value.
+     * </p>
+     *
+     * @param pointer the pointer to the value
+     * @throws IOException failure to read either input, or to write
+     */
+    void diff(final JsonPointerCustom pointer)
+            throws IOException {
+        if (source.currentToken() == null)
+            source.nextToken();
+        if (target.currentToken() == null)
+            target.nextToken();
+        diffValues(pointer);
+    }
+
+    private void diffValues(final JsonPointerCustom pointer)
+            throws IOException {
+        final JsonToken first = source.currentToken();
+        final JsonToken second = target.currentToken();
+
+        if (first == JsonToken.START_OBJECT && second == JsonToken.START_OBJECT) {
+            diffObjects(pointer);
+            return;
+        }
+
+        if (first == JsonToken.START_ARRAY && second == JsonToken.START_ARRAY) {
+            diffArrays(pointer);
+            return;
+        }
+
+        if (first.isScalarValue() && second.isScalarValue()
+                && sameScalars(first, second))
+            return;
+
+        final JsonNode oldValue = readValue(source);
+        writeOperation("replace", pointer, readValue(target), oldValue);
+    }
+
+    private void diffObjects(final JsonPointerCustom pointer)
+            throws IOException {
+        /*
+         * Members which could not be paired at the same position; they are
+         * paired later on, or end up being removed or added.
+         */
+        final Map<String, JsonNode> sourceOnly = new LinkedHashMap<>();
+        final Map<String, JsonNode> targetOnly = new LinkedHashMap<>();
+
+        JsonToken first = source.nextToken();
+        JsonToken second = target.nextToken();
+        String name;
+        JsonNode other;
+
+        while (first != JsonToken.END_OBJECT || second != JsonToken.END_OBJECT) {
+            if (first != JsonToken.END_OBJECT && second != JsonToken.END_OBJECT) {
+                name = source.getCurrentName();
+                if (name.equals(target.getCurrentName())) {
+                    source.nextToken();
+                    target.nextToken();
+                    diffValues(pointer.append(name));
+                    first = source.nextToken();
+                    second = target.nextToken();
+                    continue;
+                }
+            }
+
+            if (first != JsonToken.END_OBJECT) {
+                name = source.getCurrentName();
+                source.nextToken();
+                other = targetOnly.remove(name);
+                if (other == null)
+                    sourceOnly.put(name, readValue(source));
+                else
+                    diffTrees(pointer.append(name), readValue(source), other);
+                first = source.nextToken();
+            }
+
+            if (second != JsonToken.END_OBJECT) {
+                name = target.getCurrentName();
+                target.nextToken();
+                other = sourceOnly.remove(name);
+                if (other == null)
+                    targetOnly.put(name, readValue(target));
+                else
+                    diffTrees(pointer.append(name), other, readValue(target));
+                second = target.nextToken();
+            }
+        }
+
+        for (final String member : sourceOnly.keySet())
+            writeOperation("remove", pointer.append(member), null, null);
+
+        for (final Map.Entry<String, JsonNode> entry : targetOnly.entrySet())
+            writeOperation("add", pointer.append(entry.getKey()),
+                    entry.getValue(), null);
+    }
+
+    private void diffArrays(final JsonPointerCustom pointer)
+            throws IOException {
+        JsonToken first = source.nextToken();
+        JsonToken second = target.nextToken();
+        int index = 0;
+
+        while (first != JsonToken.END_ARRAY && second != JsonToken.END_ARRAY) {
+            diffValues(pointer.append(index++));
+            first = source.nextToken();
+            second = target.nextToken();
+        }
+
+        /*
+         * Source array is larger; elements are removed from the end, the index
+         * of removal is always the length of the target array.
+         */
+        final JsonPointerCustom removed = pointer.append(index);
+        while (first != JsonToken.END_ARRAY) {
+            source.skipChildren();
+            writeOperation("remove", removed, null, null);
+            first = source.nextToken();
+        }
+
+        final JsonPointerCustom added = pointer.append("-");
+        while (second != JsonToken.END_ARRAY) {
+            writeOperation("add", added, readValue(target), null);
+            second = target.nextToken();
+        }
+    }
+
+    private void diffTrees(final JsonPointerCustom pointer,
+                           final JsonNode first, final JsonNode second)
+            throws IOException {
+        new StreamingDiff(first.traverse(MAPPER), second.traverse(MAPPER), out)
+                .diff(pointer);
+    }
+
+    /*
+     * Scalars are compared the way JsonNumEquals does: numbers are equal if
+     * their values are, whatever their representation.
+     */
+    private boolean sameScalars(final JsonToken first, final JsonToken second)
+            throws IOException {
+        if (first.isNumeric() && second.isNumeric())
+            return source.getDecimalValue().compareTo(target.getDecimalValue()) == 0;
+        if (first != second)
+            return false;
+        return first != JsonToken.VALUE_STRING
+                || source.getText().equals(target.getText());
+    }
+
+    /*
+     * Read the value the parser is positioned on; the parser is left on the
+     * last token of that value.
+     */
+    private static JsonNode readValue(final JsonParser parser)
+            throws IOException {
+        return MAPPER.readValue(parser, JsonNode.class);
+    }
+
+    private void writeOperation(final String op, final JsonPointerCustom path,
+                                @Nullable final JsonNode value,
+                                @Nullable final JsonNode originalValue)
+            throws IOException {
+        out.writeStartObject();
+        out.writeStringField("op", op);
+        out.writeStringField("path", path.toString());
+        if (value != null) {
+            out.writeFieldName("value");
+            writeValue(value);
+        }
+        if (originalValue != null) {
+            out.writeFieldName("originalValue");
+            writeValue(originalValue);
+        }
+        out.writeEndObject();
+    }
+
+    /*
+     * Not through the mapper: its pretty printer would end up in the
+     * caller's output
+     */
+    private void writeValue(final JsonNode value)
+            throws IOException {
+        final JsonParser parser = value.traverse();
+        parser.nextToken();
+        out.copyCurrentStructure(parser);
+    }
+}
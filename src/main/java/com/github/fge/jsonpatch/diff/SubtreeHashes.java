@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.JsonNumEquals;
+
+import java.math.BigDecimal;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Structural hashes of the subtrees of the documents being diffed
+ *
+ * <p>Hashes are consistent with {@link JsonNumEquals}: equivalent values have
+ * the same hash, numbers being hashed by their mathematical value, and object
+ * members regardless of their order. Two values with different hashes are
+ * therefore known to differ without being compared, and two values with the
+ * same hash only need one compare to confirm it.</p>
+ *
+ * <p>The hashes of all containers of both documents are computed once, bottom
+ * up, when an instance is created; after that, instances are only read, and
+ * can be shared between threads. They are meant to live for the duration of
+ * one diff.</p>
+ */
+final class SubtreeHashes {
+    private static final JsonNumEquals EQUIVALENCE
+            = JsonNumEquals.getInstance();
+
+    private static final int NULL_HASH = 0x6e756c6c;
+    private static final int OBJECT_SEED = 0x6f626a;
+    private static final int ARRAY_SEED = 0x617272;
+    private static final int GOLDEN_RATIO = 0x9e3779b9;
+
+    /*
+     * Doubles with an absolute value below this are exactly representable
+     * as longs when they are integers
+     */
+    private static final double EXACT_LONG_LIMIT = 9007199254740992.0; // 2^53
+
+    private final Map<JsonNode, Integer> containers
+            = new IdentityHashMap<JsonNode, Integer>();
+
+    private SubtreeHashes() {
+    }
+
+    /**
+     * Hash all subtrees of two documents
+     *
+     * @param source the source document
+     * @param target the target document
+     * @return the hashes
+     */
+    static SubtreeHashes of(final JsonNode source, final JsonNode target) {
+        final SubtreeHashes ret = new SubtreeHashes();
+        ret.compute(source);
+        ret.compute(target);
+        return ret;
+    }
+
+    /**
+     * Get an instance with no precomputed hashes
+     *
+     * <p>Such an instance costs nothing to create; containers are compared
+     * without being hashed first.</p>
+     *
+     * @return an instance hashing all values on demand
+     */
+    static SubtreeHashes none() {
+        return new SubtreeHashes();
+    }
+
+    /**
+     * Tell whether two values are equivalent, as {@link JsonNumEquals} would
+     *
+     * <p>Hashes are only compared first if they are known: hashing a container
+     * which is not part of the hashed documents would walk it, which the
+     * comparison does anyway.</p>
+     *
+     * @param first the first value
+     * @param second the second value
+     * @return true if the values are equivalent
+     */
+    boolean equivalent(final JsonNode first, final JsonNode second) {
+        if (first == second)
+            return true;
+        if (isHashed(first) && isHashed(second)
+                && hash(first) != hash(second))
+            return false;
+        return EQUIVALENCE.equivalent(first, second);
+    }
+
+    /**
+     * Get the hash of a value
+     *
+     * <p>Values which are not part of the hashed documents are hashed on
+     * demand, but their hash is not retained.</p>
+     *
+     * @param node the value
+     * @return its hash
+     */
+    int hash(final JsonNode node) {
+        if (!node.isContainerNode())
+            return scalarHash(node);
+
+        final Integer hash = containers.get(node);
+        return hash != null ? hash : containerHash(node, false);
+    }
+
+    private boolean isHashed(final JsonNode node) {
+        return !node.isContainerNode() || containers.containsKey(node);
+    }
+
+    private int compute(final JsonNode node) {
+        return node.isContainerNode() ? containerHash(node, true)
+                : scalarHash(node);
+    }
+
+    private int containerHash(final JsonNode node, final boolean retain) {
+        int ret;
+
+        if (node.isObject()) {
+            /* Members are summed, so that their order does not matter */
+            ret = OBJECT_SEED;
+            final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            Map.Entry<String, JsonNode> field;
+            while (fields.hasNext()) {
+                field = fields.next();
+                ret += field.getKey().hashCode()
+                        ^ GOLDEN_RATIO * childHash(field.getValue(), retain);
+            }
+        } else {
+            ret = ARRAY_SEED;
+            for (final JsonNode element : node)
+                ret = 31 * ret + childHash(element, retain);
+        }
+
+        if (retain)
+            containers.put(node, ret);
+        return ret;
+    }
+
+    private int childHash(final JsonNode node, final boolean retain) {
+        return retain ? compute(node) : hash(node);
+    }
+
+    private static int scalarHash(final JsonNode node) {
+        if (node.isNumber())
+            return numberHash(node);
+        if (node.isTextual())
+            return node.textValue().hashCode();
+        if (node.isBoolean())
+            return node.booleanValue() ? 1231 : 1237;
+        if (node.isNull())
+            return NULL_HASH;
+        return node.hashCode();
+    }
+
+    /*
+     * Numbers which are mathematically integers, and fit in a long, are hashed
+     * as that long; other numbers are hashed as their decimal value with no
+     * trailing zeroes.
+     */
+    private static int numberHash(final JsonNode node) {
+        if (node.isIntegralNumber())
+            return node.canConvertToLong() ? longHash(node.longValue())
+                    : new BigDecimal(node.bigIntegerValue())
+                    .stripTrailingZeros().hashCode();
+
+        if (node.isDouble() || node.isFloat()) {
+            final double value = node.doubleValue();
+            if (Double.isNaN(value) || Double.isInfinite(value))
+                return Double.valueOf(value).hashCode();
+            if (value == Math.rint(value)
+                    && Math.abs(value) < EXACT_LONG_LIMIT)
+                return longHash((long) value);
+        }
+
+        final BigDecimal value = node.decimalValue();
+        if (value.signum() == 0)
+            return longHash(0L);
+
+        final BigDecimal stripped = value.stripTrailingZeros();
+        if (stripped.scale() <= 0)
+            try {
+                return longHash(stripped.longValueExact());
+            } catch (ArithmeticException ignored) {
+                /* does not fit in a long */
+            }
+        return stripped.hashCode();
+    }
+
+    private static int longHash(final long value) {
+        return (int) (value ^ value >>> 32);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Values found at the same path, and equivalent, in the source and target of
+ * a diff; an addition of an equivalent value is turned into a copy.
+ *
+ * Finding them takes a traversal of both documents, which is only of use if
+ * the diff adds values: it is deferred until the first addition looks for a
+ * copy source. That first addition then pays for the whole traversal, as
+ * JsonDiff.getUnchangedValues() does it, and not only for the subtrees with
+ * its hash: SubtreeHashes has no paths to look these up by, and walking the
+ * source to record them would cost more than this traversal, which does not
+ * descend into unchanged values. The values are then indexed by subtree hash,
+ * so that an addition is only compared with candidates of the same hash; the
+ * candidate found is the first equivalent one in map order, as with the map
+ * returned by JsonDiff.getUnchangedValues().
+ */
+final class UnchangedValues {
+    private static final JsonNumEquals EQUIVALENCE
+            = JsonNumEquals.getInstance();
+
+    private final SubtreeHashes hashes;
+    private final JsonNode source;
+    private final JsonNode target;
+    private final WalkSettings settings;
+
+    @Nullable
+    private Map<Integer, List<Map.Entry<JsonPointerCustom, JsonNode>>> index;
+
+    UnchangedValues(final SubtreeHashes hashes, final JsonNode source,
+                    final JsonNode target, final WalkSettings settings) {
+        this.hashes = hashes;
+        this.source = source;
+        this.target = target;
+        this.settings = settings;
+    }
+
+    /*
+     * For diffs which never turn additions into copies
+     */
+    private UnchangedValues() {
+        this(SubtreeHashes.none(), MissingNode.getInstance(),
+                MissingNode.getInstance(), WalkSettings.SEQUENTIAL);
+        index = Collections.emptyMap();
+    }
+
+    static UnchangedValues none() {
+        return new UnchangedValues();
+    }
+
+    /**
+     * Find an unchanged value equivalent to a given value
+     *
+     * <p>When the diff is run in a fork/join pool, this must be called from
+     * that pool.</p>
+     *
+     * @param value the value
+     * @return the pointer to the unchanged value, or {@code null} if there is
+     * none
+     */
+    @Nullable
+    JsonPointerCustom find(final JsonNode value) {
+        if (index == null)
+            index = compute();
+
+        if (index.isEmpty())
+            return null;
+
+        final List<Map.Entry<JsonPointerCustom, JsonNode>> candidates
+                = index.get(hashes.hash(value));
+
+        if (candidates != null)
+            for (final Map.Entry<JsonPointerCustom, JsonNode> entry : candidates)
+                if (EQUIVALENCE.equivalent(value, entry.getValue()))
+                    return entry.getKey();
+        return null;
+    }
+
+    private Map<Integer, List<Map.Entry<JsonPointerCustom, JsonNode>>> compute() {
+        final Map<JsonPointerCustom, JsonNode> unchanged
+                = JsonDiff.getUnchangedValues(hashes, source, target, settings);
+        final Map<Integer, List<Map.Entry<JsonPointerCustom, JsonNode>>> ret
+                = new HashMap<Integer, List<Map.Entry<JsonPointerCustom, JsonNode>>>();
+
+        int hash;
+        List<Map.Entry<JsonPointerCustom, JsonNode>> bucket;
+
+        for (final Map.Entry<JsonPointerCustom, JsonNode> entry
+                : unchanged.entrySet()) {
+            hash = hashes.hash(entry.getValue());
+            bucket = ret.get(hash);
+            if (bucket == null) {
+                bucket = new ArrayList<Map.Entry<JsonPointerCustom, JsonNode>>(1);
+                ret.put(hash, bucket);
+            }
+            bucket.add(entry);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.NodeType;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jackson.jsonpointer.LinkedPointer;
+import com.github.fge.jsonpatch.JsonPatchMessages;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Diff engine for the "value locator" patch format
+ *
+ * <p>This engine compares two JSON objects member by member. Arrays which are
+ * members of the root object, and arrays listed in the {@link ArrayKeys}, are
+ * keyed: their elements are matched by identity rather than by position, and
+ * operations on those elements use {@code ?} as the element token in their
+ * path, with the source element as their original value.</p>
+ *
+ * <p>The engine works on the trees directly; it does not convert nodes to
+ * other representations. Pointers are interned for the duration of a diff:
+ * the operations on the elements of a keyed array all have one of a few
+ * paths, such as {@code /Entitlements/?/Entitlement Key}, which are only
+ * built once.</p>
+ *
+ * <p>Members at {@link IgnoredPaths ignored paths} are left out of the diff;
+ * ignoring the {@code ?} token of a keyed array ignores all its elements.</p>
+ */
+@ParametersAreNonnullByDefault
+final class ValueLocatorDiff {
+    private static final MessageBundle BUNDLE
+            = MessageBundles.getBundle(JsonPatchMessages.class);
+
+    /*
+     * Only used to render the pointer of removed root members, see
+     * legacyMemberToken()
+     */
+    private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+    private ValueLocatorDiff() {
+    }
+
+    /**
+     * Generate the operations transforming one object into another
+     *
+     * @param processor the processor to report operations to
+     * @param keys the keyed arrays
+     * @param source the source object
+     * @param target the target object
+     * @throws IllegalArgumentException source or target is not an object
+     */
+    static void generateDiffs(final DiffProcessor processor,
+                              final ArrayKeys keys, final JsonNode source,
+                              final JsonNode target) {
+        generateDiffs(processor, keys, null, source, target);
+    }
+
+    /**
+     * Generate the operations transforming one object into another, leaving
+     * out ignored paths
+     *
+     * @param processor the processor to report operations to
+     * @param keys the keyed arrays
+     * @param ignored the ignored paths (may be null)
+     * @param source the source object
+     * @param target the target object
+     * @throws IllegalArgumentException source or target is not an object
+     */
+    static void generateDiffs(final DiffProcessor processor,
+                              final ArrayKeys keys,
+                              @Nullable final IgnoredPaths ignored,
+                              final JsonNode source, final JsonNode target) {
+        checkObject(source);
+        checkObject(target);
+
+        if (IgnoredPaths.isIgnored(ignored))
+            return;
+
+        final LinkedPointer pointer = LinkedPointer.internedRoot();
+        final Iterator<Map.Entry<String, JsonNode>> fields = source.fields();
+
+        Map.Entry<String, JsonNode> field;
+        String name;
+        JsonNode first;
+        JsonNode second;
+        LinkedPointer child;
+        IgnoredPaths below;
+
+        while (fields.hasNext()) {
+            field = fields.next();
+            name = field.getKey();
+            below = IgnoredPaths.child(ignored, name);
+            if (IgnoredPaths.isIgnored(below))
+                continue;
+            first = field.getValue();
+            second = target.get(name);
+
+            if (second == null || first.isArray() && !second.isArray()) {
+                processor.valueAdded(pointer.append(
+                        legacyMemberToken(name, first)).append("-")
+                        .toJsonPointer(), first);
+                continue;
+            }
+
+            if (first.equals(second))
+                continue;
+
+            child = pointer.append(name);
+            if (first.isArray())
+                generateKeyedArrayDiffs(processor, keys, below, child,
+                        keys.rootExtractorFor(child.toJsonPointer()),
+                        (ArrayNode) first,
+                        (ArrayNode) second);
+            else if (first.isObject() && second.isObject()
+                    && keys.hasKeyedArraysBelow(child.toJsonPointer()))
+                generateMemberDiffs(processor, keys, below, child, first,
+                        second, null);
+            else
+                processor.valueReplaced2(JsonPointerCustom.of("/", name),
+                        second, second, first);
+        }
+
+        final Iterator<Map.Entry<String, JsonNode>> targetFields
+                = target.fields();
+
+        while (targetFields.hasNext()) {
+            field = targetFields.next();
+            if (!source.has(field.getKey())
+                    && !IgnoredPaths.ignores(ignored, field.getKey()))
+                processor.valueRemoved2(pointer.append(field.getKey())
+                        .toJsonPointer(), field.getValue(), field.getValue());
+        }
+    }
+
+    /*
+     * Diff the members of two objects: either two matching elements of a keyed
+     * array, or objects containing keyed arrays.
+     *
+     * Members of the source which differ in the target are replaced, unless
+     * they are keyed arrays, or objects containing keyed arrays, in which case
+     * they are diffed in turn. Members only present in the target are ignored.
+     *
+     * Replacements carry the innermost keyed array element as their original
+     * value (the "value locator"); outside of keyed arrays, they carry the
+     * replaced value.
+     */
+    private static void generateMemberDiffs(final DiffProcessor processor,
+                                            final ArrayKeys keys,
+                                            @Nullable final IgnoredPaths ignored,
+                                            final LinkedPointer pointer,
+                                            final JsonNode source,
+                                            final JsonNode target,
+                                            @Nullable final JsonNode locator) {
+        final Iterator<Map.Entry<String, JsonNode>> fields = source.fields();
+
+        Map.Entry<String, JsonNode> field;
+        LinkedPointer child;
+        JsonNode first;
+        JsonNode second;
+        KeyExtractor extractor;
+        IgnoredPaths below;
+
+        while (fields.hasNext()) {
+            field = fields.next();
+            below = IgnoredPaths.child(ignored, field.getKey());
+            if (IgnoredPaths.isIgnored(below))
+                continue;
+            first = field.getValue();
+            second = target.path(field.getKey());
+            if (second.isMissingNode())
+                second = NullNode.getInstance();
+            if (first.equals(second))
+                continue;
+            child = pointer.append(field.getKey());
+            extractor = first.isArray() && second.isArray()
+                    ? keys.extractorFor(child.toJsonPointer()) : null;
+            if (extractor != null)
+                generateKeyedArrayDiffs(processor, keys, below, child,
+                        extractor, (ArrayNode) first, (ArrayNode) second);
+            else if (first.isObject() && second.isObject()
+                    && keys.hasKeyedArraysBelow(child.toJsonPointer()))
+                generateMemberDiffs(processor, keys, below, child, first,
+                        second, locator);
+            else
+                processor.valueReplaced2(child.toJsonPointer(), first, second,
+                        locator != null ? locator : first);
+        }
+    }
+
+    /*
+     * Diff two arrays whose elements are identified by the values of their key
+     * fields rather than by their position.
+     *
+     * Each side is indexed by composite key once: source elements with no
+     * counterpart are removed, target elements with no counterpart are added,
+     * and matching pairs are compared field by field. When several target
+     * elements share a key, the first one is the counterpart.
+     */
+    private static void generateKeyedArrayDiffs(final DiffProcessor processor,
+                                                final ArrayKeys keys,
+                                                @Nullable final IgnoredPaths ignored,
+                                                final LinkedPointer pointer,
+                                                final KeyExtractor extractor,
+                                                final ArrayNode source,
+                                                final ArrayNode target) {
+        final IgnoredPaths elements = IgnoredPaths.child(ignored, "?");
+        if (IgnoredPaths.isIgnored(elements))
+            return;
+
+        final int sourceSize = source.size();
+        final int targetSize = target.size();
+
+        final CompositeKey[] sourceKeys = new CompositeKey[sourceSize];
+        final Set<CompositeKey> sourceIndex = new HashSet<>(sourceSize * 2);
+        for (int i = 0; i < sourceSize; i++) {
+            sourceKeys[i] = extractor.keyOf(source.get(i));
+            sourceIndex.add(sourceKeys[i]);
+        }
+
+        final CompositeKey[] targetKeys = new CompositeKey[targetSize];
+        final Map<CompositeKey, JsonNode> targetIndex = new HashMap<>(targetSize * 2);
+        JsonNode element;
+        for (int i = 0; i < targetSize; i++) {
+            element = target.get(i);
+            targetKeys[i] = extractor.keyOf(element);
+            if (!targetIndex.containsKey(targetKeys[i]))
+                targetIndex.put(targetKeys[i], element);
+        }
+
+        final LinkedPointer located = pointer.append("?");
+        JsonNode counterpart;
+        for (int i = 0; i < sourceSize; i++) {
+            element = source.get(i);
+            counterpart = targetIndex.get(sourceKeys[i]);
+            if (counterpart != null)
+                generateMemberDiffs(processor, keys, elements, located,
+                        element, counterpart, element);
+            else
+                processor.valueRemoved2(located.toJsonPointer(), element,
+                        element);
+        }
+
+        final JsonPointerCustom added = pointer.append("-").toJsonPointer();
+        for (int i = 0; i < targetSize; i++)
+            if (!sourceIndex.contains(targetKeys[i])) {
+                element = target.get(i);
+                processor.valueAdded2(added, element, element);
+            }
+    }
+
+    /*
+     * Root members missing from the target have always been reported with a
+     * single reference token of the form "name=value", the value rendered as
+     * a plain Java map, list or scalar would be. This is kept so that patches
+     * stay identical to the ones generated by previous versions.
+     */
+    private static String legacyMemberToken(final String name,
+                                            final JsonNode value) {
+        return name + '=' + MAPPER.convertValue(value, Object.class);
+    }
+
+    private static void checkObject(final JsonNode node) {
+        if (!node.isObject())
+            throw new IllegalArgumentException(BUNDLE.printf(
+                    "jsonDiff.notAnObject", NodeType.getNodeType(node)));
+    }
+}
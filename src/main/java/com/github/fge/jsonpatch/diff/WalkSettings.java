@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import javax.annotation.Nullable;
+
+/*
+ * How the generic diff walks the documents
+ *
+ * splitThreshold: containers with at least this many members or elements to
+ * compare are processed in parallel (see ParallelDiff); maxArrayEdits: if not
+ * negative, arrays are diffed by longest common subsequence, provided they
+ * differ by no more than this many element insertions and removals (see
+ * LcsArrayDiff); otherwise, arrays are diffed index by index; ignored: the
+ * paths left out of the diff, if any (see IgnoredPaths); moves and copies:
+ * whether additions are turned into moves of removed values, or copies of
+ * unchanged values (see DiffProcessor).
+ */
+final class WalkSettings {
+    static final WalkSettings SEQUENTIAL
+            = new WalkSettings(Integer.MAX_VALUE, -1, null, true, true);
+
+    private final int splitThreshold;
+    private final int maxArrayEdits;
+    @Nullable
+    private final IgnoredPaths ignored;
+    private final boolean moves;
+    private final boolean copies;
+
+    private WalkSettings(final int splitThreshold, final int maxArrayEdits,
+                         @Nullable final IgnoredPaths ignored,
+                         final boolean moves, final boolean copies) {
+        this.splitThreshold = splitThreshold;
+        this.maxArrayEdits = maxArrayEdits;
+        this.ignored = ignored;
+        this.moves = moves;
+        this.copies = copies;
+    }
+
+    WalkSettings withSplitThreshold(final int splitThreshold) {
+        return new WalkSettings(splitThreshold, maxArrayEdits, ignored, moves,
+                copies);
+    }
+
+    WalkSettings withMaxArrayEdits(final int maxArrayEdits) {
+        return new WalkSettings(splitThreshold, maxArrayEdits, ignored, moves,
+                copies);
+    }
+
+    WalkSettings withIgnored(@Nullable final IgnoredPaths ignored) {
+        return new WalkSettings(splitThreshold, maxArrayEdits, ignored, moves,
+                copies);
+    }
+
+    WalkSettings withMoves(final boolean moves) {
+        return new WalkSettings(splitThreshold, maxArrayEdits, ignored, moves,
+                copies);
+    }
+
+    WalkSettings withCopies(final boolean copies) {
+        return new WalkSettings(splitThreshold, maxArrayEdits, ignored, moves,
+                copies);
+    }
+
+    int getSplitThreshold() {
+        return splitThreshold;
+    }
+
+    boolean isLcsArrays() {
+        return maxArrayEdits >= 0;
+    }
+
+    int getMaxArrayEdits() {
+        return maxArrayEdits;
+    }
+
+    @Nullable
+    IgnoredPaths getIgnored() {
+        return ignored;
+    }
+
+    boolean isMoves() {
+        return moves;
+    }
+
+    boolean isCopies() {
+        return copies;
+    }
+}
@@ -26,5 +26,13 @@
  *
  * <p>This implementation is able to factorize additions and removals into
  * moves and copies.</p>
+ *
+ * <p>Operations can also be pushed to a {@link
+ * com.github.fge.jsonpatch.diff.DiffSink} as they are generated, or pulled
+ * lazily from an iterator, instead of being collected into a patch.</p>
+ *
+ * <p>A {@link com.github.fge.jsonpatch.diff.DiffEngine} is configured once,
+ * with {@link com.github.fge.jsonpatch.diff.DiffOptions}, and can then be
+ * shared by all threads of an application diffing documents in a loop.</p>
  */
 package com.github.fge.jsonpatch.diff;
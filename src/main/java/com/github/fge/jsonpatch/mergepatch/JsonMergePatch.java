@@ -19,11 +19,19 @@
 
 package com.github.fge.jsonpatch.mergepatch;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.JsonSerializable;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.node.NullNode;
 import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
 import com.github.fge.jsonpatch.JsonPatch;
 import com.github.fge.jsonpatch.JsonPatchException;
 import com.github.fge.jsonpatch.JsonPatchMessages;
@@ -33,6 +41,11 @@ import com.github.fge.msgsimple.load.MessageBundles;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Implementation of JSON Merge Patch (RFC 7386)
@@ -68,6 +81,10 @@ public abstract class JsonMergePatch
     implements JsonSerializable, Patch
 {
     private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+    private static final ObjectWriter COMPACT_WRITER
+        = MAPPER.writer().without(SerializationFeature.INDENT_OUTPUT);
+    private static final JsonNumEquals EQUIVALENCE
+        = JsonNumEquals.getInstance();
     protected static final MessageBundle BUNDLE
         = MessageBundles.getBundle(JsonPatchMessages.class);
 
@@ -91,6 +108,91 @@ public abstract class JsonMergePatch
         }
     }
 
+    /**
+     * Generate a JSON Merge Patch transforming a source value into a target
+     * value
+     *
+     * <p>The patch is minimal: it has no member for members of the target
+     * which the source already has with an equivalent value, and objects
+     * present in both values are patched member by member. Other values,
+     * arrays included, are replaced as a whole.</p>
+     *
+     * <p>Unlike a JSON Patch generated by {@link
+     * com.github.fge.jsonpatch.diff.JsonDiff}, the patch does not carry the
+     * values it replaces or removes; see {@link #isSmallerThan(JsonPatch)} to
+     * choose between both forms.</p>
+     *
+     * <p>As JSON nulls remove members, the target may only have null members
+     * where the source has them as well.</p>
+     *
+     * @param source the value to be patched
+     * @param target the expected result after applying the patch
+     * @return the patch
+     * @throws NullPointerException source or target is null
+     * @throws IllegalArgumentException the patch would have to set a member
+     * to JSON null
+     * @since 1.14
+     */
+    public static JsonMergePatch diff(final JsonNode source,
+        final JsonNode target)
+    {
+        BUNDLE.checkNotNull(source, "common.nullArgument");
+        BUNDLE.checkNotNull(target, "common.nullArgument");
+        return target.isObject() ? diffObjects(source, target)
+            : new NonObjectMergePatch(target.deepCopy());
+    }
+
+    /**
+     * Compose two patches into one
+     *
+     * <p>Applying the returned patch has the same effect as applying the first
+     * patch, then the second one to the result: bursts of patches to the same
+     * value can thus be coalesced, and the value patched only once. The
+     * patches themselves are merged; no value is patched to compose them.</p>
+     *
+     * <p>This is not possible when the second patch patches an object member
+     * which the first one replaces by a non object value, or removes: the
+     * result would then be to set the member to a given object, which a
+     * JSON Merge Patch can only do by merging that object with the member's
+     * current value.</p>
+     *
+     * @param first the patch to apply first
+     * @param second the patch to apply second
+     * @return the composed patch
+     * @throws NullPointerException first or second is null
+     * @throws IllegalArgumentException the patches cannot be composed
+     * @since 1.14
+     */
+    public static JsonMergePatch compose(final JsonMergePatch first,
+        final JsonMergePatch second)
+    {
+        BUNDLE.checkNotNull(first, "common.nullArgument");
+        BUNDLE.checkNotNull(second, "common.nullArgument");
+        return compose(first, second, JsonPointerCustom.empty());
+    }
+
+    /**
+     * Tell whether this patch is smaller than a JSON Patch once serialized
+     *
+     * <p>Serialized sizes are compared as UTF-8 bytes, without any
+     * indentation.</p>
+     *
+     * @param patch the JSON Patch
+     * @return true if this patch is strictly smaller
+     * @throws NullPointerException patch is null
+     * @since 1.14
+     */
+    public final boolean isSmallerThan(final JsonPatch patch)
+    {
+        BUNDLE.checkNotNull(patch, "common.nullArgument");
+        try {
+            return COMPACT_WRITER.writeValueAsBytes(this).length
+                < COMPACT_WRITER.writeValueAsBytes(patch).length;
+        } catch (IOException e) {
+            throw new RuntimeException("cannot serialize patches", e);
+        }
+    }
+
     /**
      * Apply the patch to a given JSON value
      *
@@ -103,4 +205,140 @@ public abstract class JsonMergePatch
     @Override
     public abstract JsonNode apply(final JsonNode input)
         throws JsonPatchException;
+
+    /**
+     * Apply the patch to a given JSON value, modifying it where possible
+     *
+     * <p>Unlike {@link #apply(JsonNode)}, the input is not copied: if both
+     * the patch and the input are JSON Objects, the input itself is modified
+     * and returned, and so are the objects it contains which the patch
+     * modifies. This avoids copying values the caller owns and no longer
+     * needs in their original form.</p>
+     *
+     * <p>The values set by the patch are not copied either, and are shared
+     * with the patch; the patch never modifies them.</p>
+     *
+     * @param input the value to patch
+     * @return the patched value; the input itself if it is a JSON Object and
+     * the patch is an object patch
+     * @throws NullPointerException input is null
+     * @since 1.14
+     */
+    public final JsonNode applyInPlace(final JsonNode input)
+    {
+        BUNDLE.checkNotNull(input, "jsonPatch.nullValue");
+        return patch(input);
+    }
+
+    /**
+     * Apply the patch to a JSON value read from a parser, and write the
+     * patched value to a generator
+     *
+     * <p>The value is never read as a whole: members which the patch does not
+     * modify are copied from the parser to the generator token by token,
+     * members which it removes are skipped, and only the values replaced by
+     * the patch are read, and then discarded. The patched value is the one
+     * {@link #apply(JsonNode)} would return, with members in the same order.
+     * </p>
+     *
+     * <p>The parser may either be positioned on the first token of the value,
+     * or before it; it is left on the last token of the value. Neither the
+     * parser nor the generator is closed, and the generator is not flushed.
+     * </p>
+     *
+     * @param input the parser to read the value to patch from
+     * @param output the generator to write the patched value to
+     * @throws IOException failure to read the value, or to write the result;
+     * in particular, there is no value to read
+     * @throws NullPointerException input or output is null
+     * @since 1.14
+     */
+    public final void apply(final JsonParser input, final JsonGenerator output)
+        throws IOException
+    {
+        BUNDLE.checkNotNull(input, "jsonPatch.nullValue");
+        BUNDLE.checkNotNull(output, "common.nullArgument");
+        if (!input.hasCurrentToken() && input.nextToken() == null)
+            throw new JsonParseException(input,
+                BUNDLE.getMessage("mergePatch.noInput"));
+        write(input, output);
+    }
+
+    /*
+     * A non object patch replaces the value whatever it is; an object patch
+     * can only follow another object patch
+     */
+    static JsonMergePatch compose(final JsonMergePatch first,
+        final JsonMergePatch second, final JsonPointerCustom path)
+    {
+        if (second instanceof NonObjectMergePatch)
+            return second;
+        BUNDLE.checkArgumentPrintf(first instanceof ObjectMergePatch,
+            "mergePatch.notComposable", path);
+        return ((ObjectMergePatch) first).compose((ObjectMergePatch) second,
+            path);
+    }
+
+    /*
+     * The source may be any value: a patch turns non objects into empty objects
+     * before patching them
+     */
+    private static ObjectMergePatch diffObjects(final JsonNode source,
+        final JsonNode target)
+    {
+        final Set<String> removedMembers = new HashSet<String>();
+        final Map<String, JsonMergePatch> modifiedMembers
+            = new HashMap<String, JsonMergePatch>();
+
+        final Iterator<String> names = source.fieldNames();
+
+        String name;
+
+        while (names.hasNext()) {
+            name = names.next();
+            if (!target.has(name))
+                removedMembers.add(name);
+        }
+
+        final Iterator<Map.Entry<String, JsonNode>> members = target.fields();
+
+        Map.Entry<String, JsonNode> member;
+        JsonNode value;
+        JsonNode original;
+
+        while (members.hasNext()) {
+            member = members.next();
+            name = member.getKey();
+            value = member.getValue();
+            original = source.get(name);
+            if (original != null && EQUIVALENCE.equivalent(original, value))
+                continue;
+            BUNDLE.checkArgumentPrintf(!value.isNull(),
+                "mergePatch.nullMember", name);
+            modifiedMembers.put(name, value.isObject()
+                ? diffObjects(original != null ? original
+                    : NullNode.getInstance(), value)
+                : new NonObjectMergePatch(value.deepCopy()));
+        }
+
+        return new ObjectMergePatch(removedMembers, modifiedMembers);
+    }
+
+    /*
+     * Patch a value, modifying it if it is an object
+     */
+    abstract JsonNode patch(final JsonNode input);
+
+    /*
+     * Write the patched value of the value starting at the current token of
+     * the parser, which is left on its last token
+     */
+    abstract void write(final JsonParser input, final JsonGenerator output)
+        throws IOException;
+
+    /*
+     * Write the patched value of a missing value
+     */
+    abstract void writeMissing(final JsonGenerator output)
+        throws IOException;
 }
@@ -21,6 +21,7 @@ package com.github.fge.jsonpatch.mergepatch;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.ObjectCodec;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
@@ -32,7 +33,6 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
@@ -57,35 +57,49 @@ final class JsonMergePatchDeserializer
     {
         // FIXME: see comment above
         jp.setCodec(CODEC);
-        final JsonNode node = jp.readValueAsTree();
 
         /*
-         * Not an object: the simple case
+         * The patch is built as tokens are read: only the values of non object
+         * patches are read as trees.
+         *
+         * Jackson may call us either on the start of an object, or on its
+         * first member name.
          */
-        if (!node.isObject())
+        JsonToken token = jp.getCurrentToken();
+        if (token == null)
+            token = jp.nextToken();
+        if (token == JsonToken.START_OBJECT)
+            token = jp.nextToken();
+        else if (token != JsonToken.FIELD_NAME
+            && token != JsonToken.END_OBJECT) {
+            /*
+             * Not an object: the simple case
+             */
+            final JsonNode node = jp.readValueAsTree();
             return new NonObjectMergePatch(node);
+        }
 
         /*
          * The complicated case...
          *
          * We have to build a set of removed members, plus a map of modified
-         * members.
+         * members. As with JSON Objects, a duplicate member overrides the
+         * previous one.
          */
 
         final Set<String> removedMembers = new HashSet<String>();
         final Map<String, JsonMergePatch> modifiedMembers = new HashMap<String, JsonMergePatch>();
-        final Iterator<Map.Entry<String, JsonNode>> iterator = node.fields();
 
-        Map.Entry<String, JsonNode> entry;
+        String name;
 
-        while (iterator.hasNext()) {
-            entry = iterator.next();
-            if (entry.getValue().isNull())
-                removedMembers.add(entry.getKey());
-            else {
-                final JsonMergePatch value
-                    = deserialize(entry.getValue().traverse(), ctxt);
-                modifiedMembers.put(entry.getKey(), value);
+        for (; token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+            name = jp.getCurrentName();
+            if (jp.nextToken() == JsonToken.VALUE_NULL) {
+                modifiedMembers.remove(name);
+                removedMembers.add(name);
+            } else {
+                removedMembers.remove(name);
+                modifiedMembers.put(name, deserialize(jp, ctxt));
             }
         }
 
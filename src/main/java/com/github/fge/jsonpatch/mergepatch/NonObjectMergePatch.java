@@ -20,6 +20,7 @@
 package com.github.fge.jsonpatch.mergepatch;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.SerializerProvider;
@@ -56,6 +57,33 @@ final class NonObjectMergePatch
         return null;
     }
 
+    @Override
+    JsonNode patch(final JsonNode input)
+    {
+        return node;
+    }
+
+    @Override
+    void write(final JsonParser input, final JsonGenerator output)
+        throws IOException
+    {
+        input.skipChildren();
+        writeMissing(output);
+    }
+
+    @Override
+    void writeMissing(final JsonGenerator output)
+        throws IOException
+    {
+        /*
+         * Not output.writeTree(): this goes through the generator's codec,
+         * which may pretty print the value
+         */
+        final JsonParser parser = node.traverse();
+        parser.nextToken();
+        output.copyCurrentStructure(parser);
+    }
+
     @Override
     public void serialize(final JsonGenerator jgen,
         final SerializerProvider provider)
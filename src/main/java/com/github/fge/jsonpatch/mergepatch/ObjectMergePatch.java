@@ -20,13 +20,16 @@
 package com.github.fge.jsonpatch.mergepatch;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
 import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
 import com.github.fge.jsonpatch.JsonPatchException;
 
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -44,11 +47,14 @@ final class ObjectMergePatch
     private final Set<String> removedMembers;
     private final Map<String, JsonMergePatch> modifiedMembers;
 
+    /*
+     * The collections are not copied: callers must not modify them afterwards
+     */
     ObjectMergePatch(final Set<String> removedMembers,
         final Map<String, JsonMergePatch> modifiedMembers)
     {
-        this.removedMembers = Collections.unmodifiableSet(new HashSet<String>(removedMembers));
-        this.modifiedMembers = Collections.unmodifiableMap(new HashMap<String, JsonMergePatch>(modifiedMembers));
+        this.removedMembers = Collections.unmodifiableSet(removedMembers);
+        this.modifiedMembers = Collections.unmodifiableMap(modifiedMembers);
     }
 
     @Override
@@ -57,9 +63,16 @@ final class ObjectMergePatch
     {
         BUNDLE.checkNotNull(input, "jsonPatch.nullValue");
         /*
-         * If the input is an object, we make a deep copy of it
+         * If the input is an object, we make a deep copy of it; the objects it
+         * contains are then patched in place
          */
-        final ObjectNode ret = input.isObject() ? (ObjectNode) input.deepCopy()
+        return patch(input.isObject() ? input.deepCopy() : input);
+    }
+
+    @Override
+    JsonNode patch(final JsonNode input)
+    {
+        final ObjectNode ret = input.isObject() ? (ObjectNode) input
             : JacksonUtils.nodeFactory().objectNode();
 
         /*
@@ -84,7 +97,7 @@ final class ObjectMergePatch
              */
             final JsonNode jsonNode = ret.get(key);
             value = jsonNode != null ? jsonNode : NullNode.getInstance();
-            ret.replace(key, entry.getValue().apply(value));
+            ret.replace(key, entry.getValue().patch(value));
         }
 
         ret.remove(removedMembers);
@@ -92,11 +105,112 @@ final class ObjectMergePatch
         return ret;
     }
 
+    /*
+     * Members removed by the second patch are removed; members it modifies
+     * are no longer removed, and their patches follow those of the first
+     * patch, if any.
+     */
+    JsonMergePatch compose(final ObjectMergePatch second,
+        final JsonPointerCustom path)
+    {
+        final Set<String> removed = new HashSet<String>(removedMembers);
+        removed.removeAll(second.modifiedMembers.keySet());
+        removed.addAll(second.removedMembers);
+
+        final Map<String, JsonMergePatch> modified
+            = new HashMap<String, JsonMergePatch>(modifiedMembers);
+        modified.keySet().removeAll(second.removedMembers);
+
+        String key;
+        JsonMergePatch patch;
+        JsonMergePatch previous;
+        for (final Map.Entry<String, JsonMergePatch> entry:
+            second.modifiedMembers.entrySet()) {
+            key = entry.getKey();
+            patch = entry.getValue();
+            previous = modified.get(key);
+            if (previous != null)
+                patch = compose(previous, patch, path.append(key));
+            else
+                BUNDLE.checkArgumentPrintf(!removedMembers.contains(key)
+                    || patch instanceof NonObjectMergePatch,
+                    "mergePatch.notComposable", path.append(key));
+            modified.put(key, patch);
+        }
+
+        return new ObjectMergePatch(removed, modified);
+    }
+
     @Override
     public JsonNode apply(JsonNode node, boolean flag) throws JsonPatchException {
         return null;
     }
 
+    /*
+     * Members of the input are written in input order, and modified members
+     * missing from the input then follow, as with apply(JsonNode).
+     */
+    @Override
+    void write(final JsonParser input, final JsonGenerator output)
+        throws IOException
+    {
+        /*
+         * Not an object: as with apply(JsonNode), patch an empty object
+         */
+        if (input.getCurrentToken() != JsonToken.START_OBJECT) {
+            input.skipChildren();
+            writeMissing(output);
+            return;
+        }
+
+        final Set<String> written = new HashSet<String>();
+
+        output.writeStartObject();
+
+        String name;
+        JsonMergePatch patch;
+
+        while (input.nextToken() == JsonToken.FIELD_NAME) {
+            name = input.getCurrentName();
+            input.nextToken();
+            if (removedMembers.contains(name)) {
+                input.skipChildren();
+                continue;
+            }
+            output.writeFieldName(name);
+            patch = modifiedMembers.get(name);
+            if (patch == null) {
+                output.copyCurrentStructure(input);
+                continue;
+            }
+            patch.write(input, output);
+            written.add(name);
+        }
+
+        for (final Map.Entry<String, JsonMergePatch> entry:
+            modifiedMembers.entrySet()) {
+            if (written.contains(entry.getKey()))
+                continue;
+            output.writeFieldName(entry.getKey());
+            entry.getValue().writeMissing(output);
+        }
+
+        output.writeEndObject();
+    }
+
+    @Override
+    void writeMissing(final JsonGenerator output)
+        throws IOException
+    {
+        output.writeStartObject();
+        for (final Map.Entry<String, JsonMergePatch> entry:
+            modifiedMembers.entrySet()) {
+            output.writeFieldName(entry.getKey());
+            entry.getValue().writeMissing(output);
+        }
+        output.writeEndObject();
+    }
+
     @Override
     public void serialize(final JsonGenerator jgen,
         final SerializerProvider provider)
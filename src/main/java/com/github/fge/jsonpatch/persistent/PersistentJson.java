@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.persistent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jackson.jsonpointer.TokenResolver;
+import com.github.fge.jsonpatch.AddOperation;
+import com.github.fge.jsonpatch.CopyOperation;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.github.fge.jsonpatch.JsonPatchMessages;
+import com.github.fge.jsonpatch.JsonPatchOperation;
+import com.github.fge.jsonpatch.MoveOperation;
+import com.github.fge.jsonpatch.RemoveOperation;
+import com.github.fge.jsonpatch.ReplaceOperation;
+import com.github.fge.jsonpatch.TestOperation;
+import com.github.fge.jsonpatch.persistent.Value.ArrayValue;
+import com.github.fge.jsonpatch.persistent.Value.ObjectValue;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable version of a JSON document
+ *
+ * <p>Applying a {@link JsonPatch} to a version gives a new version, which
+ * shares all values the patch did not touch with the previous one: only the
+ * containers on the paths of the modified values are copied, and each of them
+ * only partially, since the members of objects and the elements of arrays are
+ * kept in balanced trees. Keeping many versions of a document therefore costs
+ * memory in proportion to their changes, not to the size of the document.</p>
+ *
+ * <p>Patches are applied as specified by RFC 6902, and fail for the same
+ * reasons as their operations would fail on a {@link JsonNode}; a failed patch
+ * leaves no trace, since no version is ever modified. Paths using {@code ?} to
+ * locate array elements by value are not supported.</p>
+ *
+ * <p>Conversions from and to {@link JsonNode} copy the whole document.</p>
+ *
+ * @since 1.14
+ */
+@Immutable
+public final class PersistentJson {
+    private static final MessageBundle BUNDLE
+            = MessageBundles.getBundle(JsonPatchMessages.class);
+
+    private static final JsonNumEquals EQUIVALENCE
+            = JsonNumEquals.getInstance();
+
+    private static final String LAST_ARRAY_ELEMENT = "-";
+
+    private enum Edit {
+        ADD,
+        REMOVE,
+        REPLACE
+    }
+
+    private final Value root;
+
+    private PersistentJson(final Value root) {
+        this.root = root;
+    }
+
+    /**
+     * Build a version out of a JSON value
+     *
+     * @param node the value
+     * @return a new version
+     * @throws NullPointerException value is null
+     */
+    public static PersistentJson of(final JsonNode node) {
+        BUNDLE.checkNotNull(node, "jsonPatch.nullInput");
+        return new PersistentJson(Value.of(node));
+    }
+
+    /**
+     * Build a JSON value out of this version
+     *
+     * @return a new value, which the caller may modify
+     */
+    public JsonNode toJsonNode() {
+        return root.toJsonNode();
+    }
+
+    /**
+     * Build a JSON value out of a part of this version
+     *
+     * @param pointer the pointer to the value
+     * @return a new value, or a {@link MissingNode} if there is no value at
+     * this pointer
+     * @throws NullPointerException pointer is null
+     */
+    public JsonNode get(final JsonPointerCustom pointer) {
+        BUNDLE.checkNotNull(pointer, "jsonPatch.nullInput");
+        final List<String> tokens = tokens(pointer);
+        final Value value = resolve(root, tokens, tokens.size());
+        return value == null ? MissingNode.getInstance() : value.toJsonNode();
+    }
+
+    /**
+     * Apply a patch to this version
+     *
+     * @param patch the patch
+     * @return the new version
+     * @throws JsonPatchException failed to apply patch
+     * @throws NullPointerException patch is null
+     */
+    public PersistentJson apply(final JsonPatch patch)
+            throws JsonPatchException {
+        BUNDLE.checkNotNull(patch, "jsonPatch.nullInput");
+        Value ret = root;
+        for (final JsonPatchOperation operation : patch.getOperations())
+            ret = apply(ret, operation);
+        return new PersistentJson(ret);
+    }
+
+    @Override
+    public String toString() {
+        return toJsonNode().toString();
+    }
+
+    /*
+     * Operations of unknown types are applied to a JSON value built out of
+     * the whole document.
+     */
+    private static Value apply(final Value root,
+                               final JsonPatchOperation operation)
+            throws JsonPatchException {
+        final List<String> path = tokens(operation.getPath());
+
+        if (operation instanceof AddOperation)
+            return add(root, path, Value.of(operation.originalValue));
+        if (operation instanceof RemoveOperation)
+            return remove(root, path);
+        if (operation instanceof ReplaceOperation)
+            return replace(root, path,
+                    Value.of(((ReplaceOperation) operation).getValue()));
+        if (operation instanceof TestOperation)
+            return test(root, path, ((TestOperation) operation).getValue());
+        if (operation instanceof CopyOperation)
+            return add(root, path, existing(root,
+                    tokens(((CopyOperation) operation).getFrom())));
+        if (operation instanceof MoveOperation) {
+            final List<String> from
+                    = tokens(((MoveOperation) operation).getFrom());
+            if (from.equals(path))
+                return root;
+            return add(remove(root, from), path, existing(root, from));
+        }
+        return Value.of(operation.apply(root.toJsonNode()));
+    }
+
+    private static Value add(final Value root, final List<String> path,
+                             final Value value)
+            throws JsonPatchException {
+        if (path.isEmpty())
+            return value;
+
+        final Value parent = resolve(root, path, path.size() - 1);
+
+        if (parent == null)
+            throw new JsonPatchException(BUNDLE.getMessage(
+                    "jsonPatch.noSuchParent"));
+        if (parent instanceof Value.Scalar)
+            throw new JsonPatchException(BUNDLE.getMessage(
+                    "jsonPatch.parentNotContainer"));
+
+        return update(root, path, 0, Edit.ADD, value);
+    }
+
+    private static Value remove(final Value root, final List<String> path)
+            throws JsonPatchException {
+        existing(root, path);
+        if (path.isEmpty())
+            return Value.of(MissingNode.getInstance());
+        return update(root, path, 0, Edit.REMOVE, null);
+    }
+
+    private static Value replace(final Value root, final List<String> path,
+                                 final Value value)
+            throws JsonPatchException {
+        existing(root, path);
+        if (path.isEmpty())
+            return value;
+        return update(root, path, 0, Edit.REPLACE, value);
+    }
+
+    private static Value test(final Value root, final List<String> path,
+                              final JsonNode value)
+            throws JsonPatchException {
+        if (!EQUIVALENCE.equivalent(existing(root, path).toJsonNode(), value))
+            throw new JsonPatchException(BUNDLE.getMessage(
+                    "jsonPatch.valueTestFailure"));
+        return root;
+    }
+
+    private static Value existing(final Value root, final List<String> path)
+            throws JsonPatchException {
+        final Value ret = resolve(root, path, path.size());
+        if (ret == null)
+            throw new JsonPatchException(BUNDLE.getMessage(
+                    "jsonPatch.noSuchPath"));
+        return ret;
+    }
+
+    /*
+     * Copy the containers on the path, down to the parent of the target, and
+     * edit the parent; all containers on the path must exist.
+     */
+    private static Value update(final Value node, final List<String> path,
+                                final int depth, final Edit edit,
+                                @Nullable final Value value)
+            throws JsonPatchException {
+        final String token = path.get(depth);
+
+        if (depth == path.size() - 1)
+            return edit(node, token, edit, value);
+
+        final Value child = child(node, token);
+
+        if (node instanceof ObjectValue)
+            return ((ObjectValue) node).put(token,
+                    update(child, path, depth + 1, edit, value));
+        return ((ArrayValue) node).set(index(token),
+                update(child, path, depth + 1, edit, value));
+    }
+
+    private static Value edit(final Value parent, final String token,
+                              final Edit edit, @Nullable final Value value)
+            throws JsonPatchException {
+        if (parent instanceof ObjectValue) {
+            final ObjectValue object = (ObjectValue) parent;
+            return edit == Edit.REMOVE ? object.remove(token)
+                    : object.put(token, value);
+        }
+
+        final ArrayValue array = (ArrayValue) parent;
+
+        switch (edit) {
+            case REMOVE:
+                return array.remove(index(token));
+            case REPLACE:
+                return array.set(index(token), value);
+            default:
+                break;
+        }
+
+        final int size = array.size();
+
+        if (token.equals(LAST_ARRAY_ELEMENT))
+            return array.insert(size, value);
+
+        final int index;
+
+        try {
+            index = Integer.parseInt(token);
+        } catch (NumberFormatException ignored) {
+            throw new JsonPatchException(BUNDLE.getMessage(
+                    "jsonPatch.notAnIndex"));
+        }
+
+        if (index < 0 || index > size)
+            throw new JsonPatchException(BUNDLE.getMessage(
+                    "jsonPatch.noSuchIndex"));
+
+        return array.insert(index, value);
+    }
+
+    /*
+     * The root may be missing, if removed by a previous operation
+     */
+    @Nullable
+    private static Value resolve(final Value root, final List<String> path,
+                                 final int length) {
+        Value ret = root instanceof Value.Scalar
+                && root.toJsonNode().isMissingNode() ? null : root;
+
+        for (int i = 0; i < length && ret != null; i++)
+            ret = child(ret, path.get(i));
+
+        return ret;
+    }
+
+    @Nullable
+    private static Value child(final Value node, final String token) {
+        if (node instanceof ObjectValue)
+            return ((ObjectValue) node).get(token);
+
+        if (!(node instanceof ArrayValue))
+            return null;
+
+        final ArrayValue array = (ArrayValue) node;
+        final int index = index(token);
+
+        return index >= 0 && index < array.size() ? array.get(index) : null;
+    }
+
+    /*
+     * -1 if the token is not an array index
+     */
+    private static int index(final String token) {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException ignored) {
+            return -1;
+        }
+    }
+
+    private static List<String> tokens(final JsonPointerCustom pointer) {
+        final List<String> ret = new ArrayList<String>();
+        for (final TokenResolver<JsonNode> resolver : pointer)
+            ret.add(resolver.getToken().getRaw());
+        return ret;
+    }
+}
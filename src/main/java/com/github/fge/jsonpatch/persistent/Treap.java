@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.persistent;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Persistent treap, holding either the elements of an array or the members of
+ * an object
+ *
+ * <p>Nodes are never modified: an update copies the nodes on the path from
+ * the root to the updated node, and shares all other nodes with the previous
+ * version, so that it allocates O(log n) nodes.</p>
+ *
+ * <p>Array elements are ordered by position, and addressed by index, using the
+ * size of subtrees. Object members are ordered by name, and also carry the
+ * sequence number of their insertion, which gives back the member order of the
+ * original object.</p>
+ *
+ * <p>Trees built from a whole container are perfectly balanced, with
+ * priorities decreasing with depth; nodes inserted later get random
+ * priorities, all lower than these.</p>
+ */
+final class Treap {
+    private static final int MAX_RANDOM_PRIORITY = Integer.MAX_VALUE - 64;
+
+    final String name;
+    final long sequence;
+    final Value value;
+    final int size;
+    private final int priority;
+    final Treap left;
+    final Treap right;
+
+    private Treap(final String name, final long sequence, final Value value,
+                  final int priority, final Treap left, final Treap right) {
+        this.name = name;
+        this.sequence = sequence;
+        this.value = value;
+        this.priority = priority;
+        this.left = left;
+        this.right = right;
+        size = size(left) + 1 + size(right);
+    }
+
+    static int size(final Treap node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /*
+     * Build a tree out of array elements, or of object members sorted by name
+     */
+    static Treap build(final List<Treap> nodes) {
+        return build(nodes, 0, nodes.size(), 0);
+    }
+
+    private static Treap build(final List<Treap> nodes, final int from,
+                               final int to, final int depth) {
+        if (from == to)
+            return null;
+
+        final int middle = (from + to) >>> 1;
+        final Treap node = nodes.get(middle);
+
+        return new Treap(node.name, node.sequence, node.value,
+                Integer.MAX_VALUE - depth, build(nodes, from, middle, depth + 1),
+                build(nodes, middle + 1, to, depth + 1));
+    }
+
+    static Treap element(final Value value) {
+        return new Treap(null, 0L, value, randomPriority(), null, null);
+    }
+
+    static Treap member(final String name, final long sequence,
+                        final Value value) {
+        return new Treap(name, sequence, value, randomPriority(), null, null);
+    }
+
+    /*
+     * Array operations
+     */
+
+    static Treap get(final Treap root, final int index) {
+        Treap node = root;
+        int i = index;
+        int leftSize;
+
+        while (true) {
+            leftSize = size(node.left);
+            if (i == leftSize)
+                return node;
+            if (i < leftSize) {
+                node = node.left;
+            } else {
+                i -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    static Treap set(final Treap node, final int index, final Value value) {
+        final int leftSize = size(node.left);
+
+        if (index == leftSize)
+            return node.withValue(value);
+        if (index < leftSize)
+            return node.with(set(node.left, index, value), node.right);
+        return node.with(node.left,
+                set(node.right, index - leftSize - 1, value));
+    }
+
+    static Treap insert(final Treap node, final int index, final Treap inserted) {
+        if (node == null)
+            return inserted;
+
+        final int leftSize = size(node.left);
+
+        if (inserted.priority > node.priority) {
+            final Treap[] split = split(node, index);
+            return inserted.with(split[0], split[1]);
+        }
+
+        if (index <= leftSize)
+            return node.with(insert(node.left, index, inserted), node.right);
+        return node.with(node.left,
+                insert(node.right, index - leftSize - 1, inserted));
+    }
+
+    static Treap remove(final Treap node, final int index) {
+        final int leftSize = size(node.left);
+
+        if (index == leftSize)
+            return merge(node.left, node.right);
+        if (index < leftSize)
+            return node.with(remove(node.left, index), node.right);
+        return node.with(node.left, remove(node.right, index - leftSize - 1));
+    }
+
+    /*
+     * Object operations
+     */
+
+    static Treap find(final Treap root, final String name) {
+        Treap node = root;
+        int cmp;
+
+        while (node != null) {
+            cmp = name.compareTo(node.name);
+            if (cmp == 0)
+                return node;
+            node = cmp < 0 ? node.left : node.right;
+        }
+
+        return null;
+    }
+
+    static Treap replace(final Treap node, final String name,
+                         final Value value) {
+        final int cmp = name.compareTo(node.name);
+
+        if (cmp == 0)
+            return node.withValue(value);
+        if (cmp < 0)
+            return node.with(replace(node.left, name, value), node.right);
+        return node.with(node.left, replace(node.right, name, value));
+    }
+
+    /*
+     * The member must not already exist
+     */
+    static Treap insert(final Treap node, final Treap member) {
+        if (node == null)
+            return member;
+
+        if (member.priority > node.priority) {
+            final Treap[] split = split(node, member.name);
+            return member.with(split[0], split[1]);
+        }
+
+        if (member.name.compareTo(node.name) < 0)
+            return node.with(insert(node.left, member), node.right);
+        return node.with(node.left, insert(node.right, member));
+    }
+
+    static Treap remove(final Treap node, final String name) {
+        final int cmp = name.compareTo(node.name);
+
+        if (cmp == 0)
+            return merge(node.left, node.right);
+        if (cmp < 0)
+            return node.with(remove(node.left, name), node.right);
+        return node.with(node.left, remove(node.right, name));
+    }
+
+    /*
+     * Visit nodes in order (index order, or name order)
+     */
+    static void collect(final Treap node, final List<Treap> nodes) {
+        if (node == null)
+            return;
+        collect(node.left, nodes);
+        nodes.add(node);
+        collect(node.right, nodes);
+    }
+
+    private static Treap[] split(final Treap node, final int index) {
+        if (node == null)
+            return new Treap[2];
+
+        final int leftSize = size(node.left);
+        final Treap[] ret;
+
+        if (index <= leftSize) {
+            ret = split(node.left, index);
+            ret[1] = node.with(ret[1], node.right);
+        } else {
+            ret = split(node.right, index - leftSize - 1);
+            ret[0] = node.with(node.left, ret[0]);
+        }
+
+        return ret;
+    }
+
+    private static Treap[] split(final Treap node, final String name) {
+        if (node == null)
+            return new Treap[2];
+
+        final Treap[] ret;
+
+        if (name.compareTo(node.name) < 0) {
+            ret = split(node.left, name);
+            ret[1] = node.with(ret[1], node.right);
+        } else {
+            ret = split(node.right, name);
+            ret[0] = node.with(node.left, ret[0]);
+        }
+
+        return ret;
+    }
+
+    private static Treap merge(final Treap first, final Treap second) {
+        if (first == null)
+            return second;
+        if (second == null)
+            return first;
+        if (first.priority > second.priority)
+            return first.with(first.left, merge(first.right, second));
+        return second.with(merge(first, second.left), second.right);
+    }
+
+    private Treap with(final Treap left, final Treap right) {
+        return new Treap(name, sequence, value, priority, left, right);
+    }
+
+    private Treap withValue(final Value value) {
+        return new Treap(name, sequence, value, priority, left, right);
+    }
+
+    private static int randomPriority() {
+        return ThreadLocalRandom.current().nextInt(MAX_RANDOM_PRIORITY);
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.persistent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable JSON value
+ *
+ * <p>Scalars are Jackson's own value nodes, which are immutable already;
+ * containers hold their members or elements in a {@link Treap}, so that
+ * updating them only copies O(log n) nodes.</p>
+ */
+abstract class Value {
+    private static final JsonNodeFactory FACTORY = JacksonUtils.nodeFactory();
+
+    static Value of(final JsonNode node) {
+        if (node.isObject())
+            return ObjectValue.fromObject(node);
+        if (node.isArray())
+            return ArrayValue.fromArray(node);
+        return new Scalar(node);
+    }
+
+    /**
+     * Build a Jackson tree out of this value
+     *
+     * @return a new tree, except for scalars
+     */
+    abstract JsonNode toJsonNode();
+
+    static final class Scalar extends Value {
+        private final JsonNode node;
+
+        private Scalar(final JsonNode node) {
+            this.node = node;
+        }
+
+        @Override
+        JsonNode toJsonNode() {
+            return node;
+        }
+    }
+
+    static final class ObjectValue extends Value {
+        private static final Comparator<Treap> BY_NAME
+                = new Comparator<Treap>() {
+            @Override
+            public int compare(final Treap o1, final Treap o2) {
+                return o1.name.compareTo(o2.name);
+            }
+        };
+
+        private static final Comparator<Treap> BY_SEQUENCE
+                = new Comparator<Treap>() {
+            @Override
+            public int compare(final Treap o1, final Treap o2) {
+                if (o1.sequence == o2.sequence)
+                    return 0;
+                return o1.sequence < o2.sequence ? -1 : 1;
+            }
+        };
+
+        private final Treap members;
+        private final long nextSequence;
+
+        private ObjectValue(final Treap members, final long nextSequence) {
+            this.members = members;
+            this.nextSequence = nextSequence;
+        }
+
+        private static ObjectValue fromObject(final JsonNode node) {
+            final List<Treap> list = new ArrayList<Treap>(node.size());
+            final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+
+            Map.Entry<String, JsonNode> entry;
+            long sequence = 0L;
+
+            while (fields.hasNext()) {
+                entry = fields.next();
+                list.add(Treap.member(entry.getKey(), sequence++,
+                        Value.of(entry.getValue())));
+            }
+
+            Collections.sort(list, BY_NAME);
+            return new ObjectValue(Treap.build(list), sequence);
+        }
+
+        Value get(final String name) {
+            final Treap member = Treap.find(members, name);
+            return member == null ? null : member.value;
+        }
+
+        /*
+         * An existing member keeps its position in the member order, as with
+         * ObjectNode.set()
+         */
+        ObjectValue put(final String name, final Value value) {
+            if (Treap.find(members, name) != null)
+                return new ObjectValue(Treap.replace(members, name, value),
+                        nextSequence);
+            return new ObjectValue(Treap.insert(members,
+                    Treap.member(name, nextSequence, value)), nextSequence + 1);
+        }
+
+        ObjectValue remove(final String name) {
+            return new ObjectValue(Treap.remove(members, name), nextSequence);
+        }
+
+        @Override
+        JsonNode toJsonNode() {
+            final List<Treap> list = new ArrayList<Treap>(Treap.size(members));
+            Treap.collect(members, list);
+            Collections.sort(list, BY_SEQUENCE);
+
+            final ObjectNode ret = FACTORY.objectNode();
+            for (final Treap member : list)
+                ret.set(member.name, member.value.toJsonNode());
+            return ret;
+        }
+    }
+
+    static final class ArrayValue extends Value {
+        private final Treap elements;
+
+        private ArrayValue(final Treap elements) {
+            this.elements = elements;
+        }
+
+        private static ArrayValue fromArray(final JsonNode node) {
+            final List<Treap> list = new ArrayList<Treap>(node.size());
+
+            for (final JsonNode element : node)
+                list.add(Treap.element(Value.of(element)));
+
+            return new ArrayValue(Treap.build(list));
+        }
+
+        int size() {
+            return Treap.size(elements);
+        }
+
+        Value get(final int index) {
+            return Treap.get(elements, index).value;
+        }
+
+        ArrayValue set(final int index, final Value value) {
+            return new ArrayValue(Treap.set(elements, index, value));
+        }
+
+        ArrayValue insert(final int index, final Value value) {
+            return new ArrayValue(Treap.insert(elements, index,
+                    Treap.element(value)));
+        }
+
+        ArrayValue remove(final int index) {
+            return new ArrayValue(Treap.remove(elements, index));
+        }
+
+        @Override
+        JsonNode toJsonNode() {
+            final List<Treap> list = new ArrayList<Treap>(size());
+            Treap.collect(elements, list);
+
+            final ArrayNode ret = FACTORY.arrayNode();
+            for (final Treap element : list)
+                ret.add(element.value.toJsonNode());
+            return ret;
+        }
+    }
+}
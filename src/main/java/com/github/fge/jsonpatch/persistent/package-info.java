@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+/**
+ * Persistent JSON documents
+ *
+ * <p>A {@link com.github.fge.jsonpatch.persistent.PersistentJson} is an
+ * immutable document, to which JSON Patches can be applied to obtain new
+ * versions of it. Versions share the values which did not change between
+ * them, so that keeping the history of a document is cheap.</p>
+ */
+package com.github.fge.jsonpatch.persistent;
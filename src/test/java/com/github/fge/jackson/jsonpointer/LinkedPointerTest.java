@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jackson.jsonpointer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public final class LinkedPointerTest
+{
+    private static final JsonNodeFactory FACTORY = JacksonUtils.nodeFactory();
+
+    @DataProvider
+    public Object[][] getPointers()
+    {
+        return new Object[][] {
+            { "" },
+            { "/" },
+            { "/a" },
+            { "/a/" },
+            { "/Entitlements/?/Entitlement Key" },
+            { "/a~1b/c~0d/~01/~10" },
+            { "//x//" }
+        };
+    }
+
+    @Test(dataProvider = "getPointers")
+    public void parsedPointersMatchTheOriginalParser(final String input)
+        throws JsonPointerException
+    {
+        final LinkedPointer pointer = LinkedPointer.parse(input);
+
+        assertEquals(pointer.toString(), input);
+        assertEquals(pointer.toJsonPointer(), new JsonPointerCustom(input));
+        assertEquals(pointer.toJsonPointer().toString(), input);
+        assertEquals(LinkedPointer.internedRoot().resolve(input), pointer);
+        assertEquals(LinkedPointer.internedRoot().resolve(input).hashCode(),
+            pointer.hashCode());
+    }
+
+    @DataProvider
+    public Object[][] getMalformedPointers()
+    {
+        return new Object[][] {
+            { "a" },
+            { "/~" },
+            { "/a~2" },
+            { "/a/~/b" }
+        };
+    }
+
+    @Test(dataProvider = "getMalformedPointers")
+    public void malformedPointersAreRejected(final String input)
+    {
+        try {
+            LinkedPointer.parse(input);
+            fail("No exception thrown!!");
+        } catch (JsonPointerException ignored) {
+        }
+        try {
+            new JsonPointerCustom(input);
+            fail("No exception thrown!!");
+        } catch (JsonPointerException ignored) {
+        }
+    }
+
+    @Test
+    public void internedPointersShareTheirNodes()
+        throws JsonPointerException
+    {
+        final LinkedPointer root = LinkedPointer.internedRoot();
+        final LinkedPointer first = root.resolve("/Entitlements/?/Name");
+        final LinkedPointer second = root.append("Entitlements").append("?")
+            .append("Name");
+
+        assertSame(second, first);
+        assertSame(second.toJsonPointer(), first.toJsonPointer());
+        assertSame(first.parent(), root.resolve("/Entitlements/?"));
+        assertNotSame(LinkedPointer.empty().resolve("/Entitlements"),
+            LinkedPointer.empty().resolve("/Entitlements"));
+    }
+
+    @Test
+    public void pointersResolveLikeTheirConversions()
+    {
+        final ObjectNode node = FACTORY.objectNode();
+        node.putArray("a").addObject().put("b/c", 1);
+        final LinkedPointer pointer = LinkedPointer.empty().append("a")
+            .append(0).append("b/c");
+
+        assertEquals(pointer.path(node), FACTORY.numberNode(1));
+        assertEquals(pointer.depth(), 3);
+        assertEquals(pointer.getRaw(), "b/c");
+        assertEquals(pointer.toString(), "/a/0/b~1c");
+        assertTrue(pointer.parent().parent().parent().isEmpty());
+        final JsonNode missing = pointer.append("x").path(node);
+        assertTrue(missing.isMissingNode());
+    }
+}
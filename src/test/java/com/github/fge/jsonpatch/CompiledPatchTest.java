@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public final class CompiledPatchTest
+{
+    private static final MessageBundle BUNDLE
+        = MessageBundles.getBundle(JsonPatchMessages.class);
+
+    private static final JsonNumEquals EQUIVALENCE
+        = JsonNumEquals.getInstance();
+
+    private static final JsonNodeFactory FACTORY = JacksonUtils.nodeFactory();
+
+    private static final String[] OPERATIONS = {
+        "add", "copy", "move", "remove", "replace", "test"
+    };
+
+    private final ObjectReader reader
+        = JacksonUtils.getReader().forType(JsonPatchOperation.class);
+
+    @DataProvider
+    public Iterator<Object[]> getOps()
+        throws IOException
+    {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final String name : OPERATIONS)
+            for (final JsonNode node : resource(name).get("ops"))
+                list.add(new Object[]{
+                    node.get("op"), node.get("node"), node.get("expected")
+                });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getOps")
+    public void operationsYieldExpectedResults(final JsonNode op,
+        final JsonNode node, final JsonNode expected)
+        throws IOException, JsonPatchException
+    {
+        final JsonNode copy = node.deepCopy();
+        final JsonNode actual = compile(op).apply(node);
+
+        assertTrue(EQUIVALENCE.equivalent(actual, expected),
+            "patched node differs from expectations: expected " + expected
+                + " but found " + actual);
+        assertEquals(node, copy, "input node was modified");
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getErrors()
+        throws IOException
+    {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final String name : OPERATIONS)
+            for (final JsonNode node : resource(name).get("errors"))
+                list.add(new Object[]{
+                    node.get("op"), node.get("node"),
+                    BUNDLE.getMessage(node.get("message").textValue())
+                });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getErrors")
+    public void errorsAreCorrectlyReported(final JsonNode op,
+        final JsonNode node, final String message)
+        throws IOException
+    {
+        try {
+            compile(op).apply(node);
+            fail("No exception thrown!!");
+        } catch (JsonPatchException e) {
+            assertEquals(e.getMessage(), message);
+        }
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getTestSuite()
+        throws IOException
+    {
+        final List<Object[]> list = Lists.newArrayList();
+
+        JsonNode expected;
+
+        for (final JsonNode element : resource("testsuite")) {
+            if (!element.has("patch"))
+                continue;
+            expected = element.get("expected");
+            list.add(new Object[]{
+                element.get("doc"),
+                JsonPatch.fromJson(element.get("patch")).compile(),
+                expected == null ? element.get("doc") : expected,
+                !element.has("error")
+            });
+        }
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void testsFromTestSuitePass(final JsonNode source,
+        final CompiledPatch patch, final JsonNode expected, final boolean valid)
+    {
+        try {
+            final JsonNode actual = patch.apply(source);
+            if (!valid)
+                fail("Test was expected to fail!!");
+            assertTrue(actual.equals(expected));
+        } catch (JsonPatchException ignored) {
+            if (valid)
+                fail("Test was expected to succeed!!");
+        }
+    }
+
+    @Test
+    public void compiledPatchesCanBeReused()
+        throws JsonPatchException
+    {
+        final CompiledPatch patch = new JsonPatch(
+            ImmutableList.<JsonPatchOperation>of(
+                new AddOperation(JsonPointerCustom.of("a", "-"),
+                    FACTORY.objectNode().put("x", 1)),
+                new RemoveOperation(JsonPointerCustom.of("a", 0),
+                    FACTORY.nullNode()),
+                new RemoveOperation(JsonPointerCustom.of("a", 0),
+                    FACTORY.nullNode()))).compile();
+
+        final ObjectNode first = FACTORY.objectNode();
+        first.putArray("a").add(1).add(2).add(3);
+        final ObjectNode second = first.deepCopy();
+
+        final JsonNode firstResult = patch.applyInPlace(first);
+        final JsonNode secondResult = patch.applyInPlace(second);
+
+        assertSame(firstResult, first);
+        assertEquals(firstResult.get("a").size(), 2);
+        assertEquals(firstResult.get("a").get(0), FACTORY.numberNode(3));
+        assertEquals(secondResult, firstResult);
+
+        ((ObjectNode) firstResult.get("a").get(1)).put("x", 2);
+        assertEquals(secondResult.get("a").get(1).get("x"),
+            FACTORY.numberNode(1), "added values must not be shared");
+    }
+
+    @Test
+    public void elementsAreLocatedByValue()
+        throws JsonPatchException
+    {
+        final JsonPointerCustom element = JsonPointerCustom.of("Entitlements",
+            "?");
+        final JsonPatch patch = new JsonPatch(
+            ImmutableList.<JsonPatchOperation>of(
+                new RemoveOperation(element, entitlement("2", "b")),
+                new ReplaceOperation(element.append("Name"),
+                    FACTORY.textNode("z"), entitlement("3", "c")),
+                new AddOperation(JsonPointerCustom.of("Entitlements", "-"),
+                    entitlement("4", "d")),
+                new ReplaceOperation(JsonPointerCustom.of("Count"),
+                    FACTORY.numberNode(3), FACTORY.numberNode(4)),
+                new RemoveOperation(element, entitlement("4", "d"))));
+        final CompiledPatch compiled = patch.compile();
+
+        final ObjectNode node = FACTORY.objectNode();
+        node.put("Count", 4);
+        node.putArray("Entitlements").add(entitlement("1", "a"))
+            .add(entitlement("2", "b")).add(entitlement("3", "c"))
+            .add(entitlement("2", "b"));
+        final JsonNode copy = node.deepCopy();
+
+        final JsonNode expected = patch.apply(node, true);
+
+        assertEquals(compiled.apply(node), expected);
+        assertEquals(compiled.apply(node), expected);
+        assertEquals(node, copy, "input node was modified");
+        assertEquals(expected.get("Entitlements"), FACTORY.arrayNode()
+            .add(entitlement("1", "a")).add(entitlement("3", "z"))
+            .add(entitlement("2", "b")));
+
+        final JsonPatch missing = new JsonPatch(
+            ImmutableList.<JsonPatchOperation>of(
+                new RemoveOperation(element, entitlement("5", "e"))));
+
+        try {
+            missing.compile().apply(node);
+            fail("No exception thrown!!");
+        } catch (JsonPatchException e) {
+            assertEquals(e.getMessage(),
+                BUNDLE.getMessage("jsonPatch.noSuchPath"));
+        }
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getFailedMoves()
+    {
+        final List<Object[]> list = Lists.newArrayList();
+
+        list.add(new Object[] { "{\"a\":{\"b\":{},\"x\":1}}",
+            JsonPointerCustom.of("a", "x"), JsonPointerCustom.of("q", "r"),
+            "jsonPatch.noSuchParent" });
+        list.add(new Object[] { "{\"a\":{\"b\":{},\"x\":1}}",
+            JsonPointerCustom.of("a"), JsonPointerCustom.of("a", "b", "c"),
+            "jsonPatch.noSuchParent" });
+        list.add(new Object[] { "{\"a\":{\"x\":1,\"y\":2},\"b\":3}",
+            JsonPointerCustom.of("a", "x"), JsonPointerCustom.of("b", "c"),
+            "jsonPatch.parentNotContainer" });
+        list.add(new Object[] { "{\"a\":[1,2,3]}",
+            JsonPointerCustom.of("a", 1), JsonPointerCustom.of("a", 9),
+            "jsonPatch.noSuchIndex" });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getFailedMoves")
+    public void failedMovesLeaveTheValueUntouched(final String input,
+        final JsonPointerCustom from, final JsonPointerCustom path,
+        final String message)
+        throws IOException
+    {
+        final JsonNode node = JsonLoader.fromString(input);
+        final CompiledPatch patch = new JsonPatch(
+            ImmutableList.<JsonPatchOperation>of(
+                new MoveOperation(from, path))).compile();
+
+        try {
+            patch.applyInPlace(node);
+            fail("No exception thrown!!");
+        } catch (JsonPatchException e) {
+            assertEquals(e.getMessage(), BUNDLE.getMessage(message));
+        }
+
+        assertEquals(node.toString(), input);
+    }
+
+    private CompiledPatch compile(final JsonNode op)
+        throws IOException
+    {
+        return new JsonPatch(ImmutableList.<JsonPatchOperation>of(
+            reader.<JsonPatchOperation>readValue(op))).compile();
+    }
+
+    private static JsonNode resource(final String name)
+        throws IOException
+    {
+        return JsonLoader.fromResource("/jsonpatch/" + name + ".json");
+    }
+
+    private static ObjectNode entitlement(final String key, final String name)
+    {
+        return FACTORY.objectNode().put("Key", key).put("Name", name);
+    }
+}
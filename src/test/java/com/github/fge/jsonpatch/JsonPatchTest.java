@@ -21,7 +21,9 @@ package com.github.fge.jsonpatch;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
 import com.github.fge.msgsimple.bundle.MessageBundle;
 import com.github.fge.msgsimple.load.MessageBundles;
 import com.google.common.collect.ImmutableList;
@@ -119,4 +121,119 @@ public final class JsonPatchTest
 
         verifyZeroInteractions(op2);
     }
+
+    @Test
+    public void inPlaceOperationsAreCalledInOrder()
+        throws JsonPatchException
+    {
+        final JsonNode node1 = FACTORY.textNode("hello");
+        final JsonNode node2 = FACTORY.textNode("world");
+
+        when(op1.applyInPlace(node1)).thenReturn(node2);
+
+        final JsonPatch patch = new JsonPatch(ImmutableList.of(op1, op2));
+
+        patch.applyInPlace(node1);
+        verify(op1).applyInPlace(same(node1));
+        verify(op2).applyInPlace(same(node2));
+        verify(op1, never()).apply(any(JsonNode.class));
+        verify(op2, never()).apply(any(JsonNode.class));
+    }
+
+    @Test
+    public void inPlaceApplicationModifiesTheValue()
+        throws JsonPatchException
+    {
+        final ObjectNode node = document();
+
+        final JsonNode patched = patch().applyInPlace(node);
+
+        assertSame(patched, node);
+        assertEquals(patched, expected());
+    }
+
+    @Test
+    public void singleCopyApplicationLeavesTheValueUntouched()
+        throws JsonPatchException
+    {
+        final ObjectNode node = document();
+
+        final JsonNode patched = patch().applyOnCopy(node);
+
+        assertEquals(patched, expected());
+        assertEquals(patched, patch().apply(node));
+        assertEquals(node, document());
+    }
+
+    @Test
+    public void singleCopyApplicationFailureLeavesTheValueUntouched()
+    {
+        final ObjectNode node = document();
+        final JsonPatch patch = new JsonPatch(ImmutableList.<JsonPatchOperation>of(
+            new RemoveOperation(JsonPointerCustom.of("b"), FACTORY.nullNode()),
+            new RemoveOperation(JsonPointerCustom.of("b"), FACTORY.nullNode())));
+
+        try {
+            patch.applyOnCopy(node);
+            fail("No exception thrown!!");
+        } catch (JsonPatchException e) {
+            assertEquals(e.getMessage(), BUNDLE.getMessage(
+                "jsonPatch.noSuchPath"));
+        }
+
+        assertEquals(node, document());
+    }
+
+    @Test
+    public void failedInPlaceMoveLeavesTheValueUntouched()
+    {
+        final ObjectNode node = document();
+        final JsonPatch patch = new JsonPatch(ImmutableList.<JsonPatchOperation>of(
+            new MoveOperation(JsonPointerCustom.of("a"),
+                JsonPointerCustom.of("x", "y"))));
+
+        try {
+            patch.applyInPlace(node);
+            fail("No exception thrown!!");
+        } catch (JsonPatchException e) {
+            assertEquals(e.getMessage(), BUNDLE.getMessage(
+                "jsonPatch.noSuchParent"));
+        }
+
+        assertEquals(node, document());
+    }
+
+    private static ObjectNode document()
+    {
+        final ObjectNode ret = FACTORY.objectNode();
+        ret.put("a", 1);
+        ret.put("b", 2);
+        ret.putArray("c").add(3).add(4);
+        return ret;
+    }
+
+    private static JsonNode expected()
+    {
+        final ObjectNode ret = FACTORY.objectNode();
+        ret.putArray("c").add(5).add(4);
+        ret.putObject("d").put("x", 1).put("y", 10);
+        ret.putObject("e").put("x", 1);
+        return ret;
+    }
+
+    private static JsonPatch patch()
+    {
+        return new JsonPatch(ImmutableList.<JsonPatchOperation>of(
+            new TestOperation(JsonPointerCustom.of("a"), FACTORY.numberNode(1)),
+            new ReplaceOperation(JsonPointerCustom.of("a"),
+                FACTORY.numberNode(10), FACTORY.numberNode(1)),
+            new RemoveOperation(JsonPointerCustom.of("b"), FACTORY.numberNode(2)),
+            new RemoveOperation(JsonPointerCustom.of("c", 0), FACTORY.numberNode(3)),
+            new AddOperation(JsonPointerCustom.of("c", 0), FACTORY.numberNode(5)),
+            new AddOperation(JsonPointerCustom.of("d"),
+                FACTORY.objectNode().put("x", 1)),
+            new CopyOperation(JsonPointerCustom.of("d"), JsonPointerCustom.of("e")),
+            new MoveOperation(JsonPointerCustom.of("a"),
+                JsonPointerCustom.of("d", "y"))));
+    }
 }
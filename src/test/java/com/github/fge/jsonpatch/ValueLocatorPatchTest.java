@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+import com.github.fge.jsonpatch.diff.JsonDiff;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public final class ValueLocatorPatchTest
+{
+    private static final MessageBundle BUNDLE
+        = MessageBundles.getBundle(JsonPatchMessages.class);
+
+    private static final JsonNodeFactory FACTORY = JacksonUtils.nodeFactory();
+
+    private static final JsonPointerCustom ELEMENT
+        = JsonPointerCustom.of("Entitlements", "?");
+
+    @Test
+    public void elementsAreLocatedByValue()
+        throws JsonPatchException
+    {
+        final JsonNode source = document(entitlement("1", "a"),
+            entitlement("2", "b"), entitlement("3", "c"),
+            entitlement("2", "b"));
+        final JsonNode copy = source.deepCopy();
+
+        final JsonPatch patch = new JsonPatch(
+            ImmutableList.<JsonPatchOperation>of(
+                new RemoveOperation(ELEMENT, entitlement("2", "b")),
+                new ReplaceOperation(ELEMENT.append("Name"),
+                    FACTORY.textNode("z"), entitlement("3", "c")),
+                new AddOperation(JsonPointerCustom.of("Entitlements", "-"),
+                    entitlement("4", "d")),
+                new RemoveOperation(ELEMENT, entitlement("4", "d")),
+                new RemoveOperation(ELEMENT, FACTORY.objectNode()
+                    .put("Key", "2"))));
+
+        final JsonNode actual = patch.apply(source, true);
+
+        assertEquals(actual, document(entitlement("1", "a"),
+            entitlement("3", "z")));
+        assertEquals(source, copy, "input node was modified");
+    }
+
+    @Test
+    public void replacedMembersAreReindexed()
+        throws JsonPatchException
+    {
+        final JsonPatch patch = new JsonPatch(
+            ImmutableList.<JsonPatchOperation>of(
+                new ReplaceOperation(ELEMENT.append("Name"),
+                    FACTORY.textNode("z"), entitlement("1", "a")),
+                new RemoveOperation(ELEMENT, entitlement("1", "z"))));
+
+        final JsonNode actual = patch.apply(document(entitlement("1", "a"),
+            entitlement("2", "b")), true);
+
+        assertEquals(actual, document(entitlement("2", "b")));
+    }
+
+    @Test
+    public void diffChangingSeveralMembersOfAnElementApplies()
+        throws JsonPatchException
+    {
+        final JsonNode source = document(entitlement("1", "a"),
+            entitlement("2", "b").put("Level", 1).put("Scope", "x"));
+        final JsonNode target = document(entitlement("1", "a"),
+            entitlement("2", "c").put("Level", 2).put("Scope", "y"));
+        final Map<JsonPointerCustom, Set<String>> keys
+            = ImmutableMap.<JsonPointerCustom, Set<String>>of(
+            JsonPointerCustom.of("Entitlements"), ImmutableSet.of("Key"));
+
+        final JsonPatch patch = JsonDiff.asJsonPatch(source, target, keys);
+
+        assertEquals(patch.getOperations().size(), 3);
+        assertEquals(patch.apply(source, true), target);
+    }
+
+    @Test
+    public void missingElementsFailOnlyInStrictMode()
+        throws JsonPatchException
+    {
+        final JsonNode source = document(entitlement("1", "a"));
+        final JsonPatch patch = new JsonPatch(
+            ImmutableList.<JsonPatchOperation>of(
+                new RemoveOperation(ELEMENT, entitlement("1", "b"))));
+
+        assertEquals(patch.apply(source, false), source);
+
+        try {
+            patch.apply(source, true);
+            fail("No exception thrown!!");
+        } catch (JsonPatchException e) {
+            assertEquals(e.getMessage(),
+                BUNDLE.getMessage("jsonPatch.noSuchPath"));
+        }
+    }
+
+    @Test
+    public void manyOperationsOnALargeArrayYieldExpectedResults()
+        throws JsonPatchException
+    {
+        final int size = 10000;
+        final ObjectNode[] elements = new ObjectNode[size];
+        final List<JsonPatchOperation> operations = Lists.newArrayList();
+
+        for (int i = 0; i < size; i++) {
+            elements[i] = entitlement(Integer.toString(i), "n" + i);
+            if (i % 2 == 0)
+                operations.add(new RemoveOperation(ELEMENT, elements[i]));
+        }
+
+        final JsonNode actual = new JsonPatch(operations)
+            .apply(document(elements), true);
+
+        assertEquals(actual.get("Entitlements").size(), size / 2);
+        for (int i = 0; i < size / 2; i++)
+            assertEquals(actual.get("Entitlements").get(i),
+                elements[2 * i + 1]);
+    }
+
+    private static ObjectNode entitlement(final String key, final String name)
+    {
+        return FACTORY.objectNode().put("Key", key).put("Name", name);
+    }
+
+    private static JsonNode document(final ObjectNode... entitlements)
+    {
+        final ObjectNode ret = FACTORY.objectNode();
+        final ArrayNode array = ret.putArray("Entitlements");
+        for (final ObjectNode entitlement : entitlements)
+            array.add(entitlement.deepCopy());
+        return ret;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.google.common.collect.Lists;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.testng.Assert.fail;
+
+public final class BatchDiffTest {
+    private static final JsonNodeFactory FACTORY = JacksonUtils.nodeFactory();
+
+    /*
+     * Runs tasks as they are submitted, so that the completion order is the
+     * submission order
+     */
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final List<Map.Entry<JsonNode, JsonNode>> pairs
+            = Lists.newArrayList();
+
+    public BatchDiffTest()
+            throws IOException {
+        for (final String resource : new String[]{
+                "/jsonpatch/diff/diff.json", "/jsonpatch/diff/keyed.json"
+        })
+            for (final JsonNode node : JsonLoader.fromResource(resource))
+                pairs.add(pair(node.get("first"), node.get("second")));
+    }
+
+    @AfterClass
+    public void shutdownExecutor() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void patchesAreReturnedInInputOrder() {
+        final List<JsonPatch> patches = BatchDiff.of(executor, 3).diff(pairs);
+
+        assertThat(patches).hasSize(pairs.size());
+        for (int i = 0; i < pairs.size(); i++)
+            assertSamePatch(patches.get(i), JsonDiff.asJsonPatch(
+                    pairs.get(i).getKey(), pairs.get(i).getValue()));
+    }
+
+    @Test
+    public void resultsAsCompletedCoverEveryPairOnce() {
+        final Iterator<BatchDiff.Result> iterator
+                = BatchDiff.of(executor, 2).diffAsCompleted(pairs.iterator());
+        final boolean[] seen = new boolean[pairs.size()];
+
+        BatchDiff.Result result;
+        Map.Entry<JsonNode, JsonNode> pair;
+
+        while (iterator.hasNext()) {
+            result = iterator.next();
+            assertThat(seen[result.getIndex()]).isFalse();
+            seen[result.getIndex()] = true;
+            pair = pairs.get(result.getIndex());
+            assertSamePatch(result.getPatch(),
+                    JsonDiff.asJsonPatch(pair.getKey(), pair.getValue()));
+        }
+
+        for (final boolean b : seen)
+            assertThat(b).isTrue();
+    }
+
+    @Test
+    public void largestDocumentsReadAheadAreSubmittedFirst() {
+        final List<Map.Entry<JsonNode, JsonNode>> list = Lists.newArrayList();
+        for (final int size : new int[]{ 1, 5, 3, 4 })
+            list.add(pair(array(size), array(size + 1)));
+
+        final Iterator<BatchDiff.Result> iterator
+                = BatchDiff.of(DIRECT, 2).diffAsCompleted(list.iterator());
+        final List<Integer> order = Lists.newArrayList();
+
+        while (iterator.hasNext())
+            order.add(iterator.next().getIndex());
+
+        assertThat(order).containsExactly(1, 2, 3, 0);
+    }
+
+    @Test
+    public void collectionReadAheadIsBounded() {
+        final List<Map.Entry<JsonNode, JsonNode>> list = Lists.newArrayList();
+        for (int i = 0; i < 100; i++)
+            list.add(pair(array(i), array(i + 1)));
+
+        final int[] read = { 0 };
+        final List<Integer> readAtSubmission = Lists.newArrayList();
+        final Collection<Map.Entry<JsonNode, JsonNode>> counted
+                = new AbstractCollection<Map.Entry<JsonNode, JsonNode>>() {
+            @Override
+            public Iterator<Map.Entry<JsonNode, JsonNode>> iterator() {
+                final Iterator<Map.Entry<JsonNode, JsonNode>> iterator
+                        = list.iterator();
+                return new Iterator<Map.Entry<JsonNode, JsonNode>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<JsonNode, JsonNode> next() {
+                        read[0]++;
+                        return iterator.next();
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return list.size();
+            }
+        };
+        final Executor counting = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                readAtSubmission.add(read[0]);
+                command.run();
+            }
+        };
+
+        final List<JsonPatch> patches
+                = BatchDiff.of(counting, 2).diff(counted);
+
+        assertThat(patches).hasSize(list.size());
+        assertThat(readAtSubmission.get(0)).isLessThanOrEqualTo(8);
+    }
+
+    @Test
+    public void keyedPatchesAreTheKeyedDiff() {
+        final List<Map.Entry<JsonNode, JsonNode>> objects = Lists.newArrayList();
+        for (final Map.Entry<JsonNode, JsonNode> pair : pairs)
+            if (pair.getKey().isObject() && pair.getValue().isObject())
+                objects.add(pair);
+
+        final List<JsonPatch> patches
+                = BatchDiff.withKeys(executor, 2, null).diff(objects);
+
+        for (int i = 0; i < objects.size(); i++)
+            assertSamePatch(patches.get(i), JsonDiff.asJsonPatch(
+                    objects.get(i).getKey(), objects.get(i).getValue(), null));
+    }
+
+    @Test
+    public void failuresAreReportedWithTheirPair() {
+        final List<Map.Entry<JsonNode, JsonNode>> list = Lists.newArrayList();
+        list.add(pair(FACTORY.objectNode(), FACTORY.objectNode()));
+        list.add(pair(FACTORY.arrayNode(), FACTORY.objectNode()));
+
+        final BatchDiff batchDiff = BatchDiff.withKeys(executor, 2, null);
+        final Iterator<BatchDiff.Result> iterator
+                = batchDiff.diffAsCompleted(list.iterator());
+
+        BatchDiff.Result result;
+
+        while (iterator.hasNext()) {
+            result = iterator.next();
+            if (result.getIndex() == 0)
+                assertThat(result.getFailure()).isNull();
+            else
+                assertThat(result.getFailure())
+                        .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        try {
+            batchDiff.diff(list);
+            fail("No exception thrown!!");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void limitMustBePositive() {
+        BatchDiff.of(executor, 0);
+    }
+
+    private static Map.Entry<JsonNode, JsonNode> pair(final JsonNode first,
+                                                     final JsonNode second) {
+        return new AbstractMap.SimpleImmutableEntry<JsonNode, JsonNode>(first,
+                second);
+    }
+
+    private static JsonNode array(final int size) {
+        final ArrayNode ret = FACTORY.arrayNode();
+        for (int i = 0; i < size; i++)
+            ret.add(i);
+        return ret;
+    }
+
+    private static void assertSamePatch(final JsonPatch actual,
+                                        final JsonPatch expected) {
+        assertThat(actual.toString()).isEqualTo(expected.toString());
+    }
+}
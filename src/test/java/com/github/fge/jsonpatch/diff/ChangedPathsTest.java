@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.google.common.collect.Lists;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ChangedPathsTest {
+    private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+    private static final DiffEngine NO_MOVES_OR_COPIES
+            = DiffEngine.of(DiffOptions.newBuilder().detectMoves(false)
+            .detectCopies(false).build());
+
+    private final List<Object[]> testData = Lists.newArrayList();
+
+    public ChangedPathsTest()
+            throws IOException {
+        for (final String name : new String[]{ "diff", "movecopy" })
+            for (final JsonNode node : JsonLoader.fromResource(
+                    "/jsonpatch/diff/" + name + ".json"))
+                testData.add(new Object[]{
+                        node.get("message").textValue(), node.get("first"),
+                        node.get("second")
+                });
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getTestData() {
+        return testData.iterator();
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void hasChangesTellsWhetherThePatchIsEmpty(final String message,
+                                                      final JsonNode first,
+                                                      final JsonNode second) {
+        final boolean expected = MAPPER.<JsonNode>valueToTree(
+                JsonDiff.asJsonPatch(first, second)).size() > 0;
+
+        assertThat(JsonDiff.hasChanges(first, second))
+                .overridingErrorMessage("scenario: %s", message)
+                .isEqualTo(expected);
+        assertThat(DiffEngine.newEngine().hasChanges(first, second))
+                .overridingErrorMessage("scenario: %s", message)
+                .isEqualTo(expected);
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void changedPathsAreThoseOfThePatchOperations(final String message,
+                                                         final JsonNode first,
+                                                         final JsonNode second) {
+        final List<String> expected = Lists.newArrayList();
+        String path;
+
+        for (final JsonNode op : NO_MOVES_OR_COPIES.asJson(first, second)) {
+            path = op.get("path").textValue();
+            if (expected.isEmpty()
+                    || !path.equals(expected.get(expected.size() - 1)))
+                expected.add(path);
+        }
+
+        assertThat(toStrings(JsonDiff.changedPaths(first, second)))
+                .overridingErrorMessage("scenario: %s", message)
+                .isEqualTo(expected);
+    }
+
+    @Test
+    public void trailingRemovalsAreReportedOnce()
+            throws IOException {
+        final JsonNode first = JsonLoader.fromString("{\"a\":[1,2,3,4]}");
+        final JsonNode second = JsonLoader.fromString("{\"a\":[1,5]}");
+
+        assertThat(toStrings(JsonDiff.changedPaths(first, second)))
+                .containsExactly("/a/2", "/a/1");
+    }
+
+    @Test
+    public void changesAtIgnoredPathsAreNotReported()
+            throws IOException {
+        final JsonNode first = JsonLoader.fromString("{\"a\":1,\"b\":{\"c\":1}}");
+        final JsonNode second = JsonLoader.fromString("{\"a\":2,\"b\":{\"c\":2}}");
+        final DiffEngine engine = DiffEngine.of(DiffOptions.newBuilder()
+                .ignorePath(JsonPointerCustom.of("a")).build());
+
+        assertThat(engine.hasChanges(first, second)).isTrue();
+        assertThat(toStrings(engine.changedPaths(first, second)))
+                .containsExactly("/b/c");
+
+        final DiffEngine ignoringAll = DiffEngine.of(DiffOptions.newBuilder()
+                .ignorePath(JsonPointerCustom.of("a"))
+                .ignorePath(JsonPointerCustom.of("b")).build());
+
+        assertThat(ignoringAll.hasChanges(first, second)).isFalse();
+        assertThat(ignoringAll.changedPaths(first, second).hasNext()).isFalse();
+    }
+
+    private static List<String> toStrings(
+            final Iterator<JsonPointerCustom> paths) {
+        final List<String> ret = Lists.newArrayList();
+        while (paths.hasNext())
+            ret.add(paths.next().toString());
+        return ret;
+    }
+}
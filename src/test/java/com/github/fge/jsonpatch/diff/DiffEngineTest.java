@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchOperation;
+import com.google.common.collect.Lists;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class DiffEngineTest {
+    private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final JsonNode testData;
+
+    public DiffEngineTest()
+            throws IOException {
+        final String resource = "/jsonpatch/diff/movecopy.json";
+        testData = JsonLoader.fromResource(resource);
+    }
+
+    @AfterClass
+    public void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getTestData() {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final JsonNode node : testData)
+            list.add(new Object[]{
+                    node.get("message").textValue(), node.get("first"),
+                    node.get("second")
+            });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void defaultEngineIsIdenticalToJsonDiff(final String message,
+                                                   final JsonNode first,
+                                                   final JsonNode second) {
+        final String expected = JsonDiff.asJsonPatch(first, second).toString();
+        final DiffEngine engine = DiffEngine.newEngine();
+
+        /* Twice, so that the second diff reuses the buffers of the first */
+        for (int i = 0; i < 2; i++)
+            assertThat(engine.diff(first, second).toString())
+                    .overridingErrorMessage("scenario: %s", message)
+                    .isEqualTo(expected);
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void parallelEngineIsIdenticalToJsonDiff(final String message,
+                                                    final JsonNode first,
+                                                    final JsonNode second) {
+        final DiffEngine engine = DiffEngine.of(DiffOptions.newBuilder()
+                .parallel(pool, 1).build());
+
+        assertThat(engine.diff(first, second).toString())
+                .overridingErrorMessage("scenario: %s", message)
+                .isEqualTo(JsonDiff.asJsonPatch(first, second).toString());
+    }
+
+    @Test
+    public void movesAndCopiesCanBeTurnedOff()
+            throws IOException {
+        final JsonNode first = JsonLoader.fromString(
+                "{\"a\":{\"x\":1},\"b\":[1,2]}");
+        final JsonNode second = JsonLoader.fromString(
+                "{\"c\":{\"x\":1},\"b\":[1,2],\"d\":[1,2]}");
+
+        assertThat(operations(DiffEngine.newEngine(), first, second))
+                .containsExactly("move", "copy");
+        assertThat(operations(DiffEngine.of(DiffOptions.newBuilder()
+                .detectMoves(false).build()), first, second))
+                .containsExactly("remove", "add", "copy");
+        assertThat(operations(DiffEngine.of(DiffOptions.newBuilder()
+                .detectMoves(false).detectCopies(false).build()), first,
+                second))
+                .containsExactly("remove", "add", "add");
+    }
+
+    @Test
+    public void arraysCanBeDiffedByLcs()
+            throws IOException {
+        final JsonNode first = JsonLoader.fromString("[1,2,3,4]");
+        final JsonNode second = JsonLoader.fromString("[0,1,2,3,4]");
+        final DiffEngine engine = DiffEngine.of(DiffOptions.newBuilder()
+                .arraysByLcs(2).build());
+
+        assertThat(engine.diff(first, second).toString())
+                .isEqualTo(JsonDiff.asJsonPatchLcs(first, second, 2)
+                        .toString());
+    }
+
+    @Test
+    public void ignoredPathsAreLeftOut()
+            throws IOException {
+        final JsonNode first = JsonLoader.fromString(
+                "{\"a\":1,\"b\":{\"c\":1,\"d\":1},\"e\":[1,2],\"f\":1}");
+        final JsonNode second = JsonLoader.fromString(
+                "{\"a\":2,\"b\":{\"c\":2,\"d\":2},\"e\":[3,4],\"g\":1}");
+        final DiffEngine engine = DiffEngine.of(DiffOptions.newBuilder()
+                .ignorePath(JsonPointerCustom.of("a"))
+                .ignorePath(JsonPointerCustom.of("b", "c"))
+                .ignorePath(JsonPointerCustom.of("e", 0))
+                .ignorePath(JsonPointerCustom.of("f"))
+                .ignorePath(JsonPointerCustom.of("g"))
+                .build());
+
+        assertThat(paths(engine.diff(first, second)))
+                .containsExactly("/b/d", "/e/1");
+        assertThat(paths(DiffEngine.of(DiffOptions.newBuilder()
+                .ignorePath(JsonPointerCustom.empty()).build())
+                .diff(first, second))).isEmpty();
+    }
+
+    @Test
+    public void ignoredPathsApplyToKeyedArrays()
+            throws IOException {
+        final JsonNode first = JsonLoader.fromString(
+                "{\"E\":[{\"k\":1,\"v\":1,\"w\":1}],\"x\":1}");
+        final JsonNode second = JsonLoader.fromString(
+                "{\"E\":[{\"k\":1,\"v\":2,\"w\":2}],\"x\":2}");
+        final DiffOptions.Builder builder = DiffOptions.newBuilder()
+                .keyFields(JsonPointerCustom.of("E"), Arrays.asList("k"));
+
+        assertThat(paths(DiffEngine.of(builder.build()).diff(first, second)))
+                .hasSize(3);
+        assertThat(paths(DiffEngine.of(builder
+                .ignorePath(JsonPointerCustom.of("E", "?", "v"))
+                .ignorePath(JsonPointerCustom.of("x")).build())
+                .diff(first, second))).containsExactly("/E/?/w");
+    }
+
+    @Test
+    public void sinksCanUseTheEngineTheyAreCalledFrom()
+            throws IOException {
+        final JsonNode first = JsonLoader.fromString("{\"a\":[1,{\"b\":1}]}");
+        final JsonNode second = JsonLoader.fromString("{\"a\":[2,{\"b\":2}]}");
+        final DiffEngine engine = DiffEngine.newEngine();
+        final List<String> nested = Lists.newArrayList();
+
+        engine.diff(first, second, new DiffSink() {
+            @Override
+            public void operation(final JsonPatchOperation operation) {
+                nested.add(engine.diff(first, second).toString());
+            }
+        });
+
+        assertThat(nested).hasSize(2);
+        assertThat(nested.get(1))
+                .isEqualTo(JsonDiff.asJsonPatch(first, second).toString());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void splitThresholdMustBePositive() {
+        DiffOptions.newBuilder().parallel(pool, 0);
+    }
+
+    private static List<String> operations(final DiffEngine engine,
+                                           final JsonNode first,
+                                           final JsonNode second) {
+        final List<String> ret = Lists.newArrayList();
+        for (final JsonNode op : engine.asJson(first, second))
+            ret.add(op.get("op").textValue());
+        return ret;
+    }
+
+    private static List<String> paths(final JsonPatch patch) {
+        final List<String> ret = Lists.newArrayList();
+        for (final JsonNode op : MAPPER.<JsonNode>valueToTree(patch))
+            ret.add(op.get("path").textValue());
+        return ret;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchOperation;
+import com.google.common.collect.Lists;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class DiffSinkTest {
+    private final List<JsonNode> testData = Lists.newArrayList();
+
+    public DiffSinkTest()
+            throws IOException {
+        for (final String resource : new String[]{
+                "/jsonpatch/diff/diff.json", "/jsonpatch/diff/keyed.json"
+        })
+            for (final JsonNode node : JsonLoader.fromResource(resource))
+                testData.add(node);
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getTestData() {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final JsonNode node : testData)
+            list.add(new Object[]{
+                    node.get("message").textValue(), node.get("first"),
+                    node.get("second")
+            });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void sinkReceivesThePatchOperationsInOrder(final String message,
+                                                      final JsonNode first, final JsonNode second) {
+        final PatchBuilder builder = new PatchBuilder();
+
+        JsonDiff.diff(first, second, builder);
+
+        assertSamePatch(message, JsonDiff.asJsonPatch(first, second),
+                builder.getPatch());
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void iteratorReturnsThePatchOperationsInOrder(final String message,
+                                                         final JsonNode first, final JsonNode second) {
+        final List<JsonPatchOperation> operations
+                = Lists.newArrayList(JsonDiff.operations(first, second));
+
+        assertSamePatch(message, JsonDiff.asJsonPatch(first, second),
+                new JsonPatch(operations));
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void keyedDiffSinkReceivesThePatchOperationsInOrder(
+            final String message, final JsonNode first, final JsonNode second) {
+        if (!first.isObject() || !second.isObject())
+            return;
+
+        final PatchBuilder builder = new PatchBuilder();
+
+        JsonDiff.diff(first, second, null, builder);
+
+        assertSamePatch(message, JsonDiff.asJsonPatch(first, second, null),
+                builder.getPatch());
+    }
+
+    private static void assertSamePatch(final String message,
+                                        final JsonPatch expected, final JsonPatch actual) {
+        assertThat(actual.toString()).overridingErrorMessage(
+                "operations differ from the patch\nscenario: %s\n"
+                        + "expected: %s\nactual: %s\n", message, expected, actual
+        ).isEqualTo(expected.toString());
+    }
+}
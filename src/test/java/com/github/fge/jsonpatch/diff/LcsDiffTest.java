@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.google.common.collect.Lists;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class LcsDiffTest {
+    private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+    private final JsonNode testData;
+
+    public LcsDiffTest()
+            throws IOException {
+        final String resource = "/jsonpatch/diff/lcs.json";
+        testData = JsonLoader.fromResource(resource);
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getTestData() {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final JsonNode node : testData)
+            list.add(new Object[]{
+                    node.get("message").textValue(), node.get("first"),
+                    node.get("second"), node.get("maxEdits").intValue(),
+                    node.get("patch")
+            });
+
+        return list.iterator();
+    }
+
+    /*
+     * Only operation types and paths are compared: values are checked by the
+     * other diff tests.
+     */
+    @Test(dataProvider = "getTestData")
+    public void arraysAreDiffedByLongestCommonSubsequence(final String message,
+                                                         final JsonNode first, final JsonNode second, final int maxEdits,
+                                                         final JsonNode expected) {
+        final ArrayNode actual = MAPPER.createArrayNode();
+
+        for (final JsonNode op : MAPPER.valueToTree(
+                JsonDiff.asJsonPatchLcs(first, second, maxEdits)))
+            actual.add(((ObjectNode) op).retain("op", "path", "from"));
+
+        assertThat((JsonNode) actual).overridingErrorMessage(
+                "patch is not what was expected\nscenario: %s\n"
+                        + "expected: %s\nactual: %s\n", message, expected, actual
+        ).isEqualTo(expected);
+    }
+
+    @Test
+    public void insertionAtTheStartOfALargeArrayIsASingleOperation() {
+        final ArrayNode first = MAPPER.createArrayNode();
+        for (int i = 0; i < 10000; i++)
+            first.add(i);
+        final ArrayNode second = first.deepCopy();
+        second.insert(0, -1);
+
+        assertThat(JsonDiff.asJsonPatchLcs(first, second, 10).getOperations())
+                .hasSize(1);
+        assertThat(JsonDiff.asJsonPatch(first, second).getOperations())
+                .hasSize(10001);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void negativeMaxEditsIsRejected() {
+        JsonDiff.asJsonPatchLcs(MAPPER.createArrayNode(),
+                MAPPER.createArrayNode(), -1);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.google.common.collect.Lists;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class ParallelDiffTest {
+    private static final JsonNodeFactory FACTORY = JacksonUtils.nodeFactory();
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final JsonNode testData;
+
+    public ParallelDiffTest()
+            throws IOException {
+        final String resource = "/jsonpatch/diff/diff.json";
+        testData = JsonLoader.fromResource(resource);
+    }
+
+    @AfterClass
+    public void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getTestData() {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final JsonNode node : testData)
+            list.add(new Object[]{
+                    node.get("message").textValue(), node.get("first"),
+                    node.get("second")
+            });
+
+        final Random random = new Random(0L);
+        for (int i = 0; i < 20; i++)
+            list.add(new Object[]{
+                    "random document " + i, document(random, 3),
+                    document(random, 3)
+            });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void parallelDiffIsIdenticalToSequentialDiff(final String message,
+                                                        final JsonNode first, final JsonNode second) {
+        final JsonPatch expected = JsonDiff.asJsonPatch(first, second);
+
+        for (final int threshold : new int[]{ 1, 2, 3 }) {
+            final PatchBuilder builder = new PatchBuilder();
+            ParallelDiff.diff(pool, first, second, builder, threshold);
+            final JsonPatch actual = builder.getPatch();
+
+            assertThat(actual.toString()).overridingErrorMessage(
+                    "parallel patch differs\nscenario: %s\nthreshold: %s\n"
+                            + "expected: %s\nactual: %s\n", message, threshold,
+                    expected, actual
+            ).isEqualTo(expected.toString());
+        }
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void parallelPublicEntryPointIsIdenticalToSequentialDiff(
+            final String message, final JsonNode first, final JsonNode second) {
+        final JsonPatch expected = JsonDiff.asJsonPatch(first, second);
+        final JsonPatch actual = JsonDiff.asJsonPatchParallel(first, second,
+                pool);
+
+        assertThat(actual.toString()).overridingErrorMessage(
+                "parallel patch differs\nscenario: %s\n"
+                        + "expected: %s\nactual: %s\n", message, expected, actual
+        ).isEqualTo(expected.toString());
+    }
+
+    /*
+     * Small documents with a lot of overlap between two draws, so that diffs
+     * contain unchanged values, replacements, removals, additions and moves
+     */
+    private static JsonNode document(final Random random, final int depth) {
+        final int kind = depth == 0 ? 2 : random.nextInt(3);
+
+        if (kind == 0) {
+            final ObjectNode node = FACTORY.objectNode();
+            final int size = random.nextInt(6);
+            for (int i = 0; i < size; i++)
+                node.set("k" + random.nextInt(8), document(random, depth - 1));
+            return node;
+        }
+
+        if (kind == 1) {
+            final ArrayNode node = FACTORY.arrayNode();
+            final int size = random.nextInt(6);
+            for (int i = 0; i < size; i++)
+                node.add(document(random, depth - 1));
+            return node;
+        }
+
+        return FACTORY.numberNode(random.nextInt(3));
+    }
+}
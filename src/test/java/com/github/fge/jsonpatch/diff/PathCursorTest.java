@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class PathCursorTest {
+    @Test
+    public void pointersReflectPushedTokens() {
+        final PathCursor cursor = new PathCursor();
+
+        assertThat(cursor.toPointer()).isEqualTo(JsonPointerCustom.empty());
+
+        cursor.push("a/b");
+        cursor.push(3);
+        assertThat(cursor.depth()).isEqualTo(2);
+        assertThat(cursor.toPointer())
+                .isEqualTo(JsonPointerCustom.of("a/b", 3));
+        assertThat(cursor.pointerTo("~"))
+                .isEqualTo(JsonPointerCustom.of("a/b", 3, "~"));
+        assertThat(cursor.pointerTo(0))
+                .isEqualTo(JsonPointerCustom.of("a/b", 3, 0));
+        assertThat(cursor.depth()).isEqualTo(2);
+
+        cursor.pop();
+        cursor.push("c");
+        assertThat(cursor.toPointer().toString()).isEqualTo("/a~1b/c");
+
+        cursor.truncate(0);
+        assertThat(cursor.toPointer()).isEqualTo(JsonPointerCustom.empty());
+    }
+
+    @Test
+    public void cursorGrowsAsNeeded() {
+        final PathCursor cursor = new PathCursor();
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 100; i++) {
+            cursor.push(i);
+            sb.append('/').append(i);
+        }
+
+        assertThat(cursor.toPointer().toString()).isEqualTo(sb.toString());
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        final PathCursor cursor = new PathCursor();
+        cursor.push("a");
+        cursor.push("b");
+
+        final PathCursor copy = cursor.copy();
+        copy.pop();
+        copy.push("c");
+        cursor.push("d");
+
+        assertThat(cursor.toPointer()).isEqualTo(JsonPointerCustom.of("a", "b",
+                "d"));
+        assertThat(copy.toPointer()).isEqualTo(JsonPointerCustom.of("a", "c"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void cursorCannotBeTruncatedDeeper() {
+        new PathCursor().truncate(1);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jackson.JsonNumEquals;
+import com.google.common.collect.Lists;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class SubtreeHashesTest {
+    private static final JsonNumEquals EQUIVALENCE = JsonNumEquals.getInstance();
+    private static final JsonNodeFactory FACTORY = JacksonUtils.nodeFactory();
+
+    private final JsonNode testData;
+
+    public SubtreeHashesTest()
+            throws IOException {
+        final String resource = "/jsonpatch/diff/diff.json";
+        testData = JsonLoader.fromResource(resource);
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getTestData() {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final JsonNode node : testData)
+            list.add(new Object[]{ node.get("first"), node.get("second") });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void hashedEquivalenceIsJsonNumEquals(final JsonNode first,
+                                                 final JsonNode second) {
+        final SubtreeHashes hashes = SubtreeHashes.of(first, second);
+
+        assertThat(hashes.equivalent(first, second))
+                .isEqualTo(EQUIVALENCE.equivalent(first, second));
+        assertThat(SubtreeHashes.none().equivalent(first, second))
+                .isEqualTo(EQUIVALENCE.equivalent(first, second));
+    }
+
+    @DataProvider
+    public Iterator<Object[]> equivalentValues()
+            throws IOException {
+        final List<Object[]> list = Lists.newArrayList();
+
+        list.add(new Object[]{ FACTORY.numberNode(1), FACTORY.numberNode(1.0) });
+        list.add(new Object[]{
+                FACTORY.numberNode(1.0f), FACTORY.numberNode(new BigDecimal("1.000"))
+        });
+        list.add(new Object[]{
+                FACTORY.numberNode(0), FACTORY.numberNode(new BigDecimal("0.00"))
+        });
+        list.add(new Object[]{
+                FACTORY.numberNode(0.25), FACTORY.numberNode(new BigDecimal("0.250"))
+        });
+        list.add(new Object[]{
+                FACTORY.numberNode(BigInteger.TEN.pow(30)),
+                FACTORY.numberNode(new BigDecimal("1E+30"))
+        });
+        list.add(new Object[]{
+                JsonLoader.fromString("{ \"a\": 1, \"b\": [ 2.0, { \"c\": null } ] }"),
+                JsonLoader.fromString("{ \"b\": [ 2, { \"c\": null } ], \"a\": 1.0 }")
+        });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "equivalentValues")
+    public void equivalentValuesHaveTheSameHash(final JsonNode first,
+                                                final JsonNode second) {
+        final SubtreeHashes hashes = SubtreeHashes.of(first, second);
+
+        assertThat(EQUIVALENCE.equivalent(first, second)).isTrue();
+        assertThat(hashes.hash(first)).isEqualTo(hashes.hash(second));
+        assertThat(hashes.equivalent(first, second)).isTrue();
+    }
+
+    @Test
+    public void valuesOutsideOfTheDocumentsAreHashedConsistently()
+            throws IOException {
+        final JsonNode node = JsonLoader.fromString("[ { \"a\": [ 1, 2 ] } ]");
+        final SubtreeHashes hashes = SubtreeHashes.of(node, node);
+
+        assertThat(hashes.hash(node.deepCopy())).isEqualTo(hashes.hash(node));
+    }
+}
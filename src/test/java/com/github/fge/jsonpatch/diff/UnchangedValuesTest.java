@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.diff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.google.common.collect.Lists;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class UnchangedValuesTest {
+    private static final JsonNumEquals EQUIVALENCE = JsonNumEquals.getInstance();
+    private static final JsonNodeFactory FACTORY = JacksonUtils.nodeFactory();
+
+    private final JsonNode testData;
+
+    public UnchangedValuesTest()
+            throws IOException {
+        final String resource = "/jsonpatch/diff/movecopy.json";
+        testData = JsonLoader.fromResource(resource);
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getTestData() {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final JsonNode node : testData)
+            list.add(new Object[]{ node.get("first"), node.get("second") });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getTestData")
+    public void copySourcesAreTheFirstEquivalentUnchangedValues(
+            final JsonNode first, final JsonNode second) {
+        final SubtreeHashes hashes = SubtreeHashes.of(first, second);
+        final Map<JsonPointerCustom, JsonNode> map
+                = JsonDiff.getUnchangedValues(first, second);
+        final UnchangedValues unchanged = new UnchangedValues(hashes, first,
+                second, WalkSettings.SEQUENTIAL);
+
+        for (final JsonNode value : map.values())
+            assertThat(unchanged.find(value))
+                    .isEqualTo(firstEquivalent(map, value));
+        assertThat(unchanged.find(FACTORY.textNode("\u0000none")))
+                .isNull();
+    }
+
+    @Test
+    public void noneHasNoValues() {
+        assertThat(UnchangedValues.none().find(FACTORY.objectNode())).isNull();
+    }
+
+    private static JsonPointerCustom firstEquivalent(
+            final Map<JsonPointerCustom, JsonNode> map, final JsonNode value) {
+        for (final Map.Entry<JsonPointerCustom, JsonNode> entry : map.entrySet())
+            if (EQUIVALENCE.equivalent(value, entry.getValue()))
+                return entry.getKey();
+        return null;
+    }
+}
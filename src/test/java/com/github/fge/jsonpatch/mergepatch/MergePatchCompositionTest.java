@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+package com.github.fge.jsonpatch.mergepatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.github.fge.jsonpatch.JsonPatchMessages;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+import com.google.common.collect.Lists;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public final class MergePatchCompositionTest
+{
+    private static final JsonNumEquals EQUIVALENCE = JsonNumEquals.getInstance();
+    private static final MessageBundle BUNDLE
+        = MessageBundles.getBundle(JsonPatchMessages.class);
+    private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+    private final List<JsonNode> patches = Lists.newArrayList();
+    private final List<JsonNode> victims = Lists.newArrayList();
+
+    public MergePatchCompositionTest()
+        throws IOException
+    {
+        for (final JsonNode node: JsonLoader.fromResource(
+            "/jsonpatch/mergepatch/patch-object.json")) {
+            patches.add(node.get("patch"));
+            victims.add(node.get("victim"));
+            victims.add(node.get("result"));
+        }
+        patches.add(JsonLoader.fromString("{\"a\":null,\"c\":{\"d\":null}}"));
+        patches.add(JsonLoader.fromString("[ 1 ]"));
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getData()
+    {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final JsonNode first: patches)
+            for (final JsonNode second: patches)
+                list.add(new Object[] { first, second });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getData")
+    public void composedPatchesApplyBothPatches(final JsonNode first,
+        final JsonNode second)
+        throws IOException, JsonPatchException
+    {
+        final JsonMergePatch patch1 = JsonMergePatch.fromJson(first);
+        final JsonMergePatch patch2 = JsonMergePatch.fromJson(second);
+        final JsonMergePatch composed;
+
+        try {
+            composed = JsonMergePatch.compose(patch1, patch2);
+        } catch (IllegalArgumentException ignored) {
+            return;
+        }
+
+        /*
+         * The composed patch must survive serialization
+         */
+        final JsonMergePatch reread = MAPPER.readValue(
+            MAPPER.writeValueAsString(composed), JsonMergePatch.class);
+
+        JsonNode expected;
+        for (final JsonNode victim: victims) {
+            expected = patch2.apply(patch1.apply(victim));
+            assertTrue(EQUIVALENCE.equivalent(composed.apply(victim),
+                expected));
+            assertTrue(EQUIVALENCE.equivalent(reread.apply(victim),
+                expected));
+        }
+    }
+
+    @Test
+    public void composedMembersAreMerged()
+        throws IOException, JsonPatchException
+    {
+        final JsonMergePatch composed = JsonMergePatch.compose(
+            JsonMergePatch.fromJson(JsonLoader.fromString(
+                "{\"a\":{\"b\":1,\"c\":null},\"d\":null,\"e\":2}")),
+            JsonMergePatch.fromJson(JsonLoader.fromString(
+                "{\"a\":{\"c\":3},\"d\":4,\"e\":null}")));
+
+        final JsonNode actual = MAPPER.valueToTree(composed);
+
+        assertTrue(EQUIVALENCE.equivalent(actual, JsonLoader.fromString(
+            "{\"e\":null,\"a\":{\"b\":1,\"c\":3},\"d\":4}")));
+    }
+
+    @Test
+    public void objectPatchesCannotFollowReplacements()
+        throws IOException, JsonPatchException
+    {
+        final JsonMergePatch second = JsonMergePatch.fromJson(
+            JsonLoader.fromString("{\"a\":{\"b\":{\"c\":1}}}"));
+
+        for (final String first: new String[] {
+            "{\"a\":{\"b\":null}}", "{\"a\":{\"b\":[]}}" })
+            try {
+                JsonMergePatch.compose(JsonMergePatch.fromJson(
+                    JsonLoader.fromString(first)), second);
+                fail("No exception thrown!");
+            } catch (IllegalArgumentException e) {
+                assertEquals(e.getMessage(),
+                    BUNDLE.printf("mergePatch.notComposable", "/a/b"));
+            }
+    }
+}
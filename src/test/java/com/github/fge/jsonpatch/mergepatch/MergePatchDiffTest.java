@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+package com.github.fge.jsonpatch.mergepatch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.github.fge.jsonpatch.JsonPatchMessages;
+import com.github.fge.jsonpatch.diff.JsonDiff;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+import com.google.common.collect.Lists;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public final class MergePatchDiffTest
+{
+    private static final JsonNumEquals EQUIVALENCE = JsonNumEquals.getInstance();
+    private static final MessageBundle BUNDLE
+        = MessageBundles.getBundle(JsonPatchMessages.class);
+    private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+    @DataProvider
+    public Iterator<Object[]> getData()
+        throws IOException
+    {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final JsonNode node: JsonLoader.fromResource(
+            "/jsonpatch/mergepatch/patch-object.json"))
+            list.add(new Object[] { node.get("victim"), node.get("result") });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getData")
+    public void generatedPatchYieldsTheTarget(final JsonNode source,
+        final JsonNode target)
+        throws JsonPatchException
+    {
+        final JsonMergePatch patch = JsonMergePatch.diff(source, target);
+
+        assertTrue(EQUIVALENCE.equivalent(patch.apply(source), target));
+        assertTrue(EQUIVALENCE.equivalent(patch.apply(target), target));
+    }
+
+    @Test
+    public void generatedPatchIsMinimal()
+        throws IOException
+    {
+        final JsonNode source = JsonLoader.fromString(
+            "{\"a\":{\"b\":1,\"c\":[1,2],\"d\":null},\"e\":\"x\",\"f\":2}");
+        final JsonNode target = JsonLoader.fromString(
+            "{\"a\":{\"b\":1.0,\"c\":[1],\"d\":null},\"e\":\"x\",\"g\":{}}");
+
+        final JsonNode patch
+            = MAPPER.valueToTree(JsonMergePatch.diff(source, target));
+
+        assertTrue(EQUIVALENCE.equivalent(patch,
+            JsonLoader.fromString("{\"f\":null,\"a\":{\"c\":[1]},\"g\":{}}")));
+    }
+
+    @Test
+    public void nullMembersCannotBeSet()
+        throws IOException
+    {
+        final JsonNode source = JsonLoader.fromString("{\"a\":1}");
+        final JsonNode target = JsonLoader.fromString("{\"a\":null}");
+
+        try {
+            JsonMergePatch.diff(source, target);
+            fail("No exception thrown!");
+        } catch (IllegalArgumentException e) {
+            assertEquals(e.getMessage(),
+                BUNDLE.printf("mergePatch.nullMember", "a"));
+        }
+    }
+
+    @Test
+    public void sizesAreComparedWithJsonPatches()
+        throws IOException
+    {
+        final JsonNode source = JsonLoader.fromString(
+            "{\"a\":{\"b\":\"a rather long value\",\"c\":1}}");
+        final JsonNode target = JsonLoader.fromString(
+            "{\"a\":{\"b\":\"another rather long value\",\"c\":1}}");
+
+        assertTrue(JsonMergePatch.diff(source, target)
+            .isSmallerThan(JsonDiff.asJsonPatch(source, target)));
+
+        /*
+         * Arrays are replaced as a whole
+         */
+        final ArrayNode array = JacksonUtils.nodeFactory().arrayNode();
+        for (int i = 0; i < 100; i++)
+            array.add(i);
+        final ArrayNode other = array.deepCopy();
+        other.set(50, JacksonUtils.nodeFactory().numberNode(-1));
+
+        assertFalse(JsonMergePatch.diff(array, other)
+            .isSmallerThan(JsonDiff.asJsonPatch(array, other)));
+    }
+}
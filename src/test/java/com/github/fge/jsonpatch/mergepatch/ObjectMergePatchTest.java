@@ -36,6 +36,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -91,4 +92,37 @@ public final class ObjectMergePatchTest
 
         assertTrue(EQUIVALENCE.equivalent(result, patched));
     }
+
+    @Test(dataProvider = "getData")
+    public void patchingInPlaceWorksAsExpected(final JsonNode input,
+        final JsonNode victim, final JsonNode result)
+        throws JsonPatchException
+    {
+        final JsonMergePatch patch = JsonMergePatch.fromJson(input);
+        final JsonNode copy = victim.deepCopy();
+        final JsonNode patched = patch.applyInPlace(copy);
+
+        assertTrue(EQUIVALENCE.equivalent(result, patched));
+        if (victim.isObject())
+            assertSame(patched, copy);
+    }
+
+    @Test
+    public void patchingInPlaceModifiesNestedObjects()
+        throws IOException, JsonPatchException
+    {
+        final JsonMergePatch patch = JsonMergePatch.fromJson(
+            JsonLoader.fromString("{\"a\":{\"b\":{\"c\":1}}}"));
+        final JsonNode victim
+            = JsonLoader.fromString("{\"a\":{\"b\":{\"d\":2}},\"e\":3}");
+        final JsonNode nested = victim.get("a").get("b");
+        final JsonNode copy = victim.deepCopy();
+
+        final JsonNode patched = patch.apply(victim);
+        assertEquals(victim, copy, "input node was modified");
+
+        assertSame(patch.applyInPlace(victim), victim);
+        assertSame(victim.get("a").get("b"), nested);
+        assertEquals(victim, patched);
+    }
 }
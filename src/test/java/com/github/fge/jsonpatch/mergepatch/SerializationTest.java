@@ -24,6 +24,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fge.jackson.JacksonUtils;
 import com.github.fge.jackson.JsonLoader;
 import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jsonpatch.JsonPatchException;
 import com.google.common.collect.Lists;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -32,6 +33,7 @@ import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
@@ -108,4 +110,34 @@ public final class SerializationTest
 
         assertTrue(EQUIVALENCE.equivalent(input, serialized));
     }
+
+    @Test
+    public void successivePatchesAreReadFromTheSameParser()
+        throws IOException, JsonPatchException
+    {
+        final JsonMergePatch[] patches = mapper.readValue(
+            "[{\"a\":{\"b\":null,\"c\":[{}]},\"d\":null},\"x\",{}]",
+            JsonMergePatch[].class);
+
+        assertEquals(patches.length, 3);
+        assertEquals(patches[0].apply(JacksonUtils.getReader()
+            .readTree("{\"a\":{\"b\":1},\"d\":2,\"e\":3}")),
+            JacksonUtils.getReader().readTree("{\"a\":{\"c\":[{}]},\"e\":3}"));
+        assertSame(patches[1].getClass(), NonObjectMergePatch.class);
+        assertSame(patches[2].getClass(), ObjectMergePatch.class);
+    }
+
+    @Test
+    public void lastDuplicateMemberWins()
+        throws IOException, JsonPatchException
+    {
+        final JsonMergePatch patch = mapper.readValue(
+            "{\"a\":1,\"a\":null,\"b\":null,\"b\":{\"c\":2}}",
+            JsonMergePatch.class);
+        final JsonNode patched = patch.apply(JacksonUtils.getReader()
+            .readTree("{\"a\":0}"));
+
+        assertEquals(patched, JacksonUtils.getReader()
+            .readTree("{\"b\":{\"c\":2}}"));
+    }
 }
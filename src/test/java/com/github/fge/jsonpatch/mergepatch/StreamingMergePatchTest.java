@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+package com.github.fge.jsonpatch.mergepatch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public final class StreamingMergePatchTest
+{
+    private static final ObjectMapper MAPPER = JacksonUtils.newMapper();
+
+    @DataProvider
+    public Iterator<Object[]> getData()
+        throws IOException
+    {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final String name: new String[] { "object", "nonobject" })
+            for (final JsonNode node: JsonLoader.fromResource(
+                "/jsonpatch/mergepatch/patch-" + name + ".json"))
+                list.add(new Object[] { node.get("patch"), node.get("victim") });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getData")
+    public void streamingAndTreePatchesAgree(final JsonNode input,
+        final JsonNode victim)
+        throws IOException, JsonPatchException
+    {
+        final JsonMergePatch patch = JsonMergePatch.fromJson(input);
+        final JsonNode expected = patch.apply(victim);
+        final String text = stream(patch, victim.toString());
+
+        assertFalse(text.contains("\n"), "output is pretty printed");
+        assertTrue(MAPPER.readTree(text).equals(expected));
+    }
+
+    @Test
+    public void untouchedMembersKeepTheirPlace()
+        throws IOException, JsonPatchException
+    {
+        final JsonMergePatch patch = JsonMergePatch.fromJson(JsonLoader
+            .fromString("{\"b\":null,\"c\":{\"x\":1},\"e\":[2],\"a\":0}"));
+        final String victim
+            = "{\"a\":[1,{\"y\":2}],\"b\":3,\"c\":{\"y\":4},\"d\":{\"z\":[5]}}";
+
+        final JsonNode actual = MAPPER.readTree(stream(patch, victim));
+
+        assertEquals(Lists.newArrayList(actual.fieldNames()),
+            ImmutableList.of("a", "c", "d", "e"));
+        assertTrue(actual.equals(JsonLoader.fromString(
+            "{\"a\":0,\"c\":{\"y\":4,\"x\":1},\"d\":{\"z\":[5]},\"e\":[2]}")));
+    }
+
+    @Test
+    public void parserIsLeftOnTheLastTokenOfTheValue()
+        throws IOException, JsonPatchException
+    {
+        final JsonMergePatch patch = JsonMergePatch.fromJson(JsonLoader
+            .fromString("{\"a\":null}"));
+        final JsonParser parser = MAPPER.getFactory()
+            .createParser("[{\"a\":1,\"b\":2},{\"a\":3}]");
+        final StringWriter writer = new StringWriter();
+        final JsonGenerator generator = MAPPER.getFactory()
+            .createGenerator(writer);
+
+        parser.nextToken();
+        generator.writeStartArray();
+        while (parser.nextToken() != null && parser.isExpectedStartObjectToken())
+            patch.apply(parser, generator);
+        generator.writeEndArray();
+        generator.close();
+
+        assertTrue(MAPPER.readTree(writer.toString())
+            .equals(JsonLoader.fromString("[{\"b\":2},{}]")));
+    }
+
+    @Test
+    public void patchYellsOnEmptyInput()
+        throws IOException, JsonPatchException
+    {
+        final JsonMergePatch patch = JsonMergePatch.fromJson(JsonLoader
+            .fromString("{}"));
+
+        try {
+            stream(patch, "");
+            fail("No exception thrown!");
+        } catch (JsonParseException ignored) {
+        }
+    }
+
+    private static String stream(final JsonMergePatch patch,
+        final String victim)
+        throws IOException
+    {
+        final JsonParser parser = MAPPER.getFactory().createParser(victim);
+        final StringWriter writer = new StringWriter();
+        final JsonGenerator generator = MAPPER.getFactory()
+            .createGenerator(writer);
+
+        patch.apply(parser, generator);
+        generator.close();
+        return writer.toString();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2014, Francis Galiegue (fgaliegue@gmail.com)
+ *
+ * This software is dual-licensed under:
+ *
+ * - the Lesser General Public License (LGPL) version 3.0 or, at your option, any
+ *   later version;
+ * - the Apache Software License (ASL) version 2.0.
+ *
+ * The text of this file and of both licenses is available at the root of this
+ * project or, if you have the jar distribution, in directory META-INF/, under
+ * the names LGPL-3.0.txt and ASL-2.0.txt respectively.
+ *
+ * Direct link to the sources:
+ *
+ * - LGPL 3.0: https://www.gnu.org/licenses/lgpl-3.0.txt
+ * - ASL 2.0: http://www.apache.org/licenses/LICENSE-2.0.txt
+ */
+
+package com.github.fge.jsonpatch.persistent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JacksonUtils;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jackson.jsonpointer.JsonPointerCustom;
+import com.github.fge.jsonpatch.AddOperation;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.github.fge.jsonpatch.JsonPatchMessages;
+import com.github.fge.jsonpatch.JsonPatchOperation;
+import com.github.fge.jsonpatch.RemoveOperation;
+import com.github.fge.msgsimple.bundle.MessageBundle;
+import com.github.fge.msgsimple.load.MessageBundles;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public final class PersistentJsonTest {
+    private static final MessageBundle BUNDLE
+            = MessageBundles.getBundle(JsonPatchMessages.class);
+
+    private static final JsonNumEquals EQUIVALENCE
+            = JsonNumEquals.getInstance();
+
+    private static final JsonNodeFactory FACTORY = JacksonUtils.nodeFactory();
+
+    private static final String[] OPERATIONS = {
+            "add", "copy", "move", "remove", "replace", "test"
+    };
+
+    private final ObjectReader reader
+            = JacksonUtils.getReader().forType(JsonPatchOperation.class);
+
+    @DataProvider
+    public Iterator<Object[]> getOps()
+            throws IOException {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final String name : OPERATIONS)
+            for (final JsonNode node : resource(name).get("ops"))
+                list.add(new Object[]{
+                        node.get("op"), node.get("node"), node.get("expected")
+                });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getOps")
+    public void operationsYieldExpectedResults(final JsonNode op,
+                                               final JsonNode node, final JsonNode expected)
+            throws IOException, JsonPatchException {
+        final JsonNode actual = PersistentJson.of(node).apply(patch(op))
+                .toJsonNode();
+
+        assertTrue(EQUIVALENCE.equivalent(actual, expected),
+                "patched node differs from expectations: expected " + expected
+                        + " but found " + actual);
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getErrors()
+            throws IOException {
+        final List<Object[]> list = Lists.newArrayList();
+
+        for (final String name : OPERATIONS)
+            for (final JsonNode node : resource(name).get("errors"))
+                list.add(new Object[]{
+                        node.get("op"), node.get("node"),
+                        BUNDLE.getMessage(node.get("message").textValue())
+                });
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getErrors")
+    public void errorsAreCorrectlyReported(final JsonNode op,
+                                           final JsonNode node, final String message)
+            throws IOException {
+        try {
+            PersistentJson.of(node).apply(patch(op));
+            fail("No exception thrown!!");
+        } catch (JsonPatchException e) {
+            assertEquals(e.getMessage(), message);
+        }
+    }
+
+    @DataProvider
+    public Iterator<Object[]> getTestSuite()
+            throws IOException {
+        final List<Object[]> list = Lists.newArrayList();
+
+        JsonNode expected;
+
+        for (final JsonNode element : resource("testsuite")) {
+            if (!element.has("patch"))
+                continue;
+            expected = element.get("expected");
+            list.add(new Object[]{
+                    element.get("doc"), JsonPatch.fromJson(element.get("patch")),
+                    expected == null ? element.get("doc") : expected,
+                    !element.has("error")
+            });
+        }
+
+        return list.iterator();
+    }
+
+    @Test(dataProvider = "getTestSuite")
+    public void testsFromTestSuitePass(final JsonNode source,
+                                       final JsonPatch patch, final JsonNode expected, final boolean valid) {
+        try {
+            final JsonNode actual = PersistentJson.of(source).apply(patch)
+                    .toJsonNode();
+            if (!valid)
+                fail("Test was expected to fail!!");
+            assertTrue(actual.equals(expected));
+        } catch (JsonPatchException ignored) {
+            if (valid)
+                fail("Test was expected to succeed!!");
+        }
+    }
+
+    @Test
+    public void previousVersionsAreNotModified()
+            throws JsonPatchException {
+        final ObjectNode node = FACTORY.objectNode();
+        final ArrayNode array = node.putArray("a");
+        for (int i = 0; i < 1000; i++)
+            array.addObject().put("i", i);
+
+        final PersistentJson first = PersistentJson.of(node);
+        final PersistentJson second = first.apply(new JsonPatch(
+                ImmutableList.<JsonPatchOperation>of(
+                        new AddOperation(JsonPointerCustom.of("a", 0),
+                                FACTORY.textNode("x")),
+                        new RemoveOperation(JsonPointerCustom.of("a", 500),
+                                FACTORY.nullNode()))));
+
+        assertEquals(first.toJsonNode(), node);
+        assertEquals(second.get(JsonPointerCustom.of("a", 0)),
+                FACTORY.textNode("x"));
+        assertEquals(second.get(JsonPointerCustom.of("a", 500)),
+                node.get("a").get(500));
+        assertEquals(second.get(JsonPointerCustom.of("a", 999)),
+                node.get("a").get(999));
+        assertTrue(second.get(JsonPointerCustom.of("a", 1000)).isMissingNode());
+    }
+
+    @Test
+    public void failedPatchesLeaveNoTrace()
+            throws JsonPatchException {
+        final ObjectNode node = FACTORY.objectNode();
+        node.put("a", 1);
+
+        final PersistentJson version = PersistentJson.of(node);
+
+        try {
+            version.apply(new JsonPatch(ImmutableList.<JsonPatchOperation>of(
+                    new RemoveOperation(JsonPointerCustom.of("a"),
+                            FACTORY.nullNode()),
+                    new RemoveOperation(JsonPointerCustom.of("a"),
+                            FACTORY.nullNode()))));
+            fail("No exception thrown!!");
+        } catch (JsonPatchException e) {
+            assertEquals(e.getMessage(), BUNDLE.getMessage(
+                    "jsonPatch.noSuchPath"));
+        }
+
+        assertEquals(version.toJsonNode(), node);
+    }
+
+    private JsonPatch patch(final JsonNode op)
+            throws IOException {
+        return new JsonPatch(ImmutableList.<JsonPatchOperation>of(
+                reader.<JsonPatchOperation>readValue(op)));
+    }
+
+    private static JsonNode resource(final String name)
+            throws IOException {
+        return JsonLoader.fromResource("/jsonpatch/" + name + ".json");
+    }
+}